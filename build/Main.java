@@ -1,7 +1,8 @@
 package build;
 
+import build.buildbuddy.BuildDaemon;
 import build.buildbuddy.BuildExecutor;
-import build.buildbuddy.HashDigestFunction;
+import build.buildbuddy.Murmur3HashFunction;
 import build.buildbuddy.Repository;
 import build.buildbuddy.Resolver;
 import build.buildbuddy.maven.MavenDefaultVersionNegotiator;
@@ -19,6 +20,29 @@ import java.util.concurrent.Executors;
 public class Main {
 
     public static void main(String[] args) throws IOException {
+        Path socket = Path.of("target", "daemon.socket");
+        switch (args.length == 0 ? "build" : args[0]) {
+            case "build" -> {
+                Map<String, Path> steps;
+                if (Files.exists(socket)) {
+                    steps = BuildDaemon.build(socket, System.out::println);
+                } else {
+                    try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+                        steps = executor().execute(executorService).toCompletableFuture().join();
+                    }
+                }
+                System.out.println("Built: " + steps);
+            }
+            case "daemon" -> {
+                BuildDaemon.start(socket, executor(), Executors.newVirtualThreadPerTaskExecutor());
+                System.out.println("Started daemon on " + socket);
+            }
+            case "stop" -> BuildDaemon.stop(socket);
+            default -> throw new IllegalArgumentException("Unknown command: " + args[0]);
+        }
+    }
+
+    private static BuildExecutor executor() throws IOException {
         MavenRepository mavenRepository = new MavenRepository();
         Map<String, Repository> repositories = Map.of("file", Repository.files(), "maven", mavenRepository);
         Map<String, Resolver> resolvers = Map.of("file", Resolver.identity(), "maven", new MavenPomResolver(
@@ -26,7 +50,7 @@ public class Main {
                 MavenDefaultVersionNegotiator.maven(mavenRepository)));
         BuildExecutor executor = new BuildExecutor(
                 Files.createDirectories(Path.of("target")),
-                new HashDigestFunction("MD5"));
+                new Murmur3HashFunction());
         executor.addSource("sources", Path.of("sources"));
         executor.addStep("sources-bound", Bind.asSources(), "sources");
         executor.addStep("sources-javac", new Javac(), "sources-bound");
@@ -42,10 +66,6 @@ public class Main {
         executor.addStep("test-dependencies-jar", new Dependencies(repositories), "test-dependencies-resolved");
         executor.addStep("test-sources-javac", new Javac(), "sources-jar", "test-dependencies-jar", "test-sources-bound");
         executor.addStep("junit", new JUnit4(), "sources-jar", "test-dependencies-jar", "test-sources-javac");
-        Map<String, Path> steps;
-        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
-            steps = executor.execute(executorService).toCompletableFuture().join();
-        }
-        System.out.println("Built: " + steps);
+        return executor;
     }
 }
@@ -0,0 +1,29 @@
+package build.buildbuddy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+
+public interface BuildCache {
+
+    Optional<Map<Path, byte[]>> restore(String key, Path folder) throws IOException;
+
+    void store(String key, Path folder, Map<Path, byte[]> checksums) throws IOException;
+
+    default BuildCache andThen(BuildCache cache) {
+        return new BuildCache() {
+            @Override
+            public Optional<Map<Path, byte[]>> restore(String key, Path folder) throws IOException {
+                Optional<Map<Path, byte[]>> candidate = BuildCache.this.restore(key, folder);
+                return candidate.isPresent() ? candidate : cache.restore(key, folder);
+            }
+
+            @Override
+            public void store(String key, Path folder, Map<Path, byte[]> checksums) throws IOException {
+                BuildCache.this.store(key, folder, checksums);
+                cache.store(key, folder, checksums);
+            }
+        };
+    }
+}
@@ -0,0 +1,155 @@
+package build.buildbuddy;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+public class BuildDaemon implements Closeable {
+
+    private final Path socket;
+    private final BuildExecutor buildExecutor;
+    private final Executor executor;
+    private final ServerSocketChannel channel;
+
+    private Thread thread;
+
+    private BuildDaemon(Path socket, BuildExecutor buildExecutor, Executor executor, ServerSocketChannel channel) {
+        this.socket = socket;
+        this.buildExecutor = buildExecutor;
+        this.executor = executor;
+        this.channel = channel;
+    }
+
+    public static BuildDaemon start(Path socket, BuildExecutor buildExecutor, Executor executor) throws IOException {
+        Files.deleteIfExists(socket);
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.bind(UnixDomainSocketAddress.of(socket));
+        } catch (Throwable t) {
+            channel.close();
+            throw t;
+        }
+        BuildDaemon daemon = new BuildDaemon(socket, buildExecutor, executor, channel);
+        daemon.thread = Thread.ofPlatform().name("build-daemon").start(daemon::run);
+        return daemon;
+    }
+
+    public static Map<String, Path> build(Path socket, Consumer<String> log) throws IOException {
+        try (SocketChannel client = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+             BufferedReader reader = new BufferedReader(Channels.newReader(client, StandardCharsets.UTF_8))) {
+            Writer writer = Channels.newWriter(client, StandardCharsets.UTF_8);
+            writer.write("build\n");
+            writer.flush();
+            Map<String, Path> folders = new LinkedHashMap<>();
+            StringBuilder output = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] elements = line.split("\t", 3);
+                switch (elements[0]) {
+                    case "step" -> folders.put(elements[1], Path.of(elements[2]));
+                    case "log" -> {
+                        log.accept(elements[1]);
+                        output.append('\n').append(elements[1]);
+                    }
+                    case "done" -> {
+                        return folders;
+                    }
+                    case "failed" -> throw new IllegalStateException("Build failed in daemon:" + output);
+                    default -> throw new IllegalStateException("Unexpected response: " + line);
+                }
+            }
+            throw new EOFException("Daemon closed connection before build completed");
+        }
+    }
+
+    public static void stop(Path socket) throws IOException {
+        try (SocketChannel client = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+             BufferedReader reader = new BufferedReader(Channels.newReader(client, StandardCharsets.UTF_8))) {
+            Writer writer = Channels.newWriter(client, StandardCharsets.UTF_8);
+            writer.write("stop\n");
+            writer.flush();
+            reader.readLine();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            SocketChannel client;
+            try {
+                client = channel.accept();
+            } catch (ClosedChannelException _) {
+                return;
+            } catch (IOException _) {
+                continue;
+            }
+            Thread.ofVirtual().name("build-daemon-client").start(() -> handle(client));
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        try (client; BufferedReader reader = new BufferedReader(Channels.newReader(client, StandardCharsets.UTF_8))) {
+            Writer writer = Channels.newWriter(client, StandardCharsets.UTF_8);
+            String command = reader.readLine();
+            switch (command == null ? "" : command) {
+                case "build" -> build(writer);
+                case "stop" -> {
+                    writer.write("stopped\n");
+                    writer.flush();
+                    close();
+                }
+                default -> {
+                    writer.write("log\tUnknown command: " + command + "\nfailed\n");
+                    writer.flush();
+                }
+            }
+        } catch (IOException _) {
+        }
+    }
+
+    private synchronized void build(Writer writer) throws IOException {
+        Map<String, Path> folders;
+        try {
+            folders = buildExecutor.rebuild(executor).toCompletableFuture().join();
+        } catch (Throwable t) {
+            StringWriter trace = new StringWriter();
+            t.printStackTrace(new PrintWriter(trace));
+            for (String line : trace.toString().split("\\R")) {
+                writer.write("log\t" + line + "\n");
+            }
+            writer.write("failed\n");
+            writer.flush();
+            return;
+        }
+        for (Map.Entry<String, Path> entry : folders.entrySet()) {
+            writer.write("step\t" + entry.getKey() + "\t" + entry.getValue().toAbsolutePath() + "\n");
+        }
+        writer.write("done\n");
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        Files.deleteIfExists(socket);
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
@@ -1,53 +1,142 @@
 package build.buildbuddy;
 
+import com.sun.management.OperatingSystemMXBean;
+
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 public class BuildExecutor {
 
+    public static final String FILE_STATES = ".states", DURATIONS = ".durations", STAGING = ".staging";
+    public static final String TRASH = ".trash", JOURNAL = ".journal", LOCKS = ".locks";
+
     private final Path root;
     private final HashFunction hash;
+    private final StepDurations durations;
+    private final DeferredDeletion deletion;
+    private final BuildLocks locks;
+
+    private FileStateCache states;
+    private boolean binaryManifests;
+    private BuildCache cache;
+    private BiConsumer<String, Throwable> failures;
+    private Path trace;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private final Map<String, Long> capacities = new HashMap<>(Map.of(
+            BuildStep.CPU, (long) Runtime.getRuntime().availableProcessors(),
+            BuildStep.MEMORY, toPhysicalMemory(),
+            BuildStep.JVM_FORK, (long) Runtime.getRuntime().availableProcessors()));
 
     final Map<String, Registration> registrations = new LinkedHashMap<>();
+    final Map<String, Path> sources = new LinkedHashMap<>();
+
+    private volatile Map<String, StepSummary> summaries;
+    private boolean recovered;
 
     public BuildExecutor(Path root, HashFunction hash) {
         this.root = root;
         this.hash = hash;
+        durations = new StepDurations(root.resolve(DURATIONS));
+        deletion = new DeferredDeletion(root.resolve(TRASH));
+        locks = BuildLocks.of(root.resolve(LOCKS));
+        states = new FileStateCache(root.resolve(FILE_STATES), hash);
+    }
+
+    public BuildExecutor fileStates(boolean enabled) {
+        states = enabled ? new FileStateCache(root.resolve(FILE_STATES), hash) : null;
+        return this;
+    }
+
+    public BuildExecutor binaryManifests(boolean enabled) {
+        binaryManifests = enabled;
+        return this;
+    }
+
+    public BuildExecutor cache(BuildCache cache) {
+        return cache(cache, (identity, throwable) -> System.err.println("Could not store "
+                + identity + " in build cache: " + throwable));
+    }
+
+    public BuildExecutor cache(BuildCache cache, BiConsumer<String, Throwable> failures) {
+        this.cache = cache;
+        this.failures = failures;
+        return this;
+    }
+
+    public BuildExecutor parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public BuildExecutor resource(String resource, long capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity of " + resource + " must be positive: " + capacity);
+        }
+        capacities.put(resource, capacity);
+        return this;
+    }
+
+    public BuildExecutor trace(Path trace) {
+        this.trace = trace;
+        return this;
+    }
+
+    private static long toPhysicalMemory() {
+        long memory = ManagementFactory.getOperatingSystemMXBean() instanceof OperatingSystemMXBean bean
+                ? bean.getTotalMemorySize()
+                : Runtime.getRuntime().maxMemory();
+        return Math.max(1, memory / (1024 * 1024));
+    }
+
+    private HashFunction hash() {
+        FileStateCache states = this.states;
+        return states == null ? hash : states;
     }
 
     public void addSource(String identity, Path path) {
-        add(identity, wrapSource(identity, path), Set.of());
+        add(identity, wrapSource(identity, path), Set.of(), Map.of(), false);
+        sources.put(identity, path);
     }
 
     public void replaceSource(String identity, Path path) {
-        replace(identity, wrapSource(identity, path));
+        replace(identity, wrapSource(identity, path), Map.of(), false);
+        sources.put(identity, path);
     }
 
-    private BiFunction<Executor, Map<String, StepSummary>, CompletionStage<Map<String, StepSummary>>> wrapSource(
+    private BiFunction<Execution, Map<String, StepSummary>, CompletionStage<Map<String, StepSummary>>> wrapSource(
             String identity,
             Path path) {
-        return (executor, _) -> {
-            CompletableFuture<Map<String, StepSummary>> future = new CompletableFuture<>();
-            executor.execute(() -> {
-                try {
-                    future.complete(Map.of(identity, new StepSummary(path, HashFunction.read(path, hash))));
-                } catch (Throwable t) {
-                    future.completeExceptionally(t);
-                }
+        return (execution, _) -> {
+            BuildTrace.Span span = execution.trace(identity).span("hash");
+            return HashFunction.read(path, hash(), execution.executor()).thenApply(checksums -> {
+                span.end();
+                return Map.of(identity, new StepSummary(path, checksums, null));
             });
-            return future;
         };
     }
 
@@ -56,7 +145,7 @@ public class BuildExecutor {
     }
 
     public void addStep(String identity, BuildStep step, SequencedSet<String> dependencies) {
-        add(identity, wrapStep(identity, step), dependencies);
+        add(identity, wrapStep(identity, step), dependencies, step.resources(), step.isAlwaysRun());
     }
 
     public void addStepAtEnd(String identity, BuildStep step) {
@@ -64,169 +153,755 @@ public class BuildExecutor {
     }
 
     private void addStep(String identity, BuildStep step, Set<String> dependencies) {
-        add(identity, wrapStep(identity, step), dependencies);
+        add(identity, wrapStep(identity, step), dependencies, step.resources(), step.isAlwaysRun());
     }
 
     public void replaceStep(String identity, BuildStep step) {
-        replace(identity, wrapStep(identity, step));
+        replace(identity, wrapStep(identity, step), step.resources(), step.isAlwaysRun());
+        sources.remove(identity);
     }
 
     private void add(String identity,
-                     BiFunction<Executor, Map<String, StepSummary>, CompletionStage<Map<String, StepSummary>>> step,
-                     Set<String> dependencies) {
+                     BiFunction<Execution, Map<String, StepSummary>, CompletionStage<Map<String, StepSummary>>> step,
+                     Set<String> dependencies,
+                     Map<String, Long> resources,
+                     boolean alwaysRun) {
+        validate(identity, resources);
         if (!registrations.keySet().containsAll(dependencies)) {
             throw new IllegalArgumentException("Unknown dependencies: " + dependencies.stream()
                     .filter(dependency -> !registrations.containsKey(dependency))
                     .distinct()
                     .toList());
         }
-        if (registrations.putIfAbsent(identity, new Registration(step, dependencies)) != null) {
+        if (registrations.putIfAbsent(identity, new Registration(step, dependencies, resources, alwaysRun)) != null) {
             throw new IllegalArgumentException("Step already registered: " + identity);
         }
     }
 
-    private void replace(String identity, BiFunction<Executor,
+    private void replace(String identity, BiFunction<Execution,
             Map<String, StepSummary>,
-            CompletionStage<Map<String, StepSummary>>> step) {
+            CompletionStage<Map<String, StepSummary>>> step, Map<String, Long> resources, boolean alwaysRun) {
         Registration registration = registrations.get(identity);
         if (registration == null) {
             throw new IllegalArgumentException("Unknown step: " + identity);
         }
-        registrations.replace(identity, new Registration(step, registration.dependencies()));
+        validate(identity, resources);
+        registrations.replace(identity, new Registration(step, registration.dependencies(), resources, alwaysRun));
+        summaries = null;
+    }
+
+    private static void validate(String identity, Map<String, Long> resources) {
+        resources.forEach((resource, amount) -> {
+            if (amount < 0) {
+                throw new IllegalArgumentException("Negative amount of " + resource
+                        + " for " + identity + ": " + amount);
+            }
+        });
+    }
+
+    private BiFunction<Execution, Map<String, StepSummary>, CompletionStage<Map<String, StepSummary>>> wrapStep(
+            String identity,
+            BuildStep step) {
+        BiFunction<Execution,
+                Map<String, StepSummary>,
+                CompletionStage<Map<String, StepSummary>>> locked = wrapLockedStep(identity, step);
+        return (execution, states) -> {
+            if (execution.analysis() != null) {
+                return locked.apply(execution, states);
+            }
+            BuildTrace.Span span = execution.trace(identity).span("lock");
+            return locks.step(identity, execution.executor()).thenCompose(lock -> {
+                span.end();
+                CompletionStage<Map<String, StepSummary>> stage;
+                try {
+                    stage = locked.apply(execution, states);
+                } catch (Throwable t) {
+                    stage = CompletableFuture.failedFuture(t);
+                }
+                return stage.whenComplete((_, _) -> {
+                    CompletableFuture<?> upload = execution.uploads().get(identity);
+                    (upload == null ? CompletableFuture.completedFuture(null) : upload).whenComplete((_, _) -> {
+                        try {
+                            lock.close();
+                        } catch (IOException _) {
+                        }
+                    });
+                });
+            });
+        };
     }
 
-    private BiFunction<Executor, Map<String, StepSummary>, CompletionStage<Map<String, StepSummary>>> wrapStep(
+    private BiFunction<Execution, Map<String, StepSummary>, CompletionStage<Map<String, StepSummary>>> wrapLockedStep(
             String identity,
             BuildStep step) {
-        return (executor, states) -> {
+        return (execution, states) -> {
+            Executor executor = execution.executor();
+            BuildTrace trace = execution.trace(identity);
             try {
                 Path previous = root.resolve(identity),
                         checksum = previous.resolve("checksum"),
                         output = previous.resolve("output");
-                boolean exists = Files.exists(previous);
-                Map<Path, byte[]> current = exists ? HashFunction.read(checksum.resolve("checksums")) : Map.of();
-                boolean consistent = exists && HashFunction.areConsistent(output, current, hash);
-                SequencedMap<String, BuildStepArgument> arguments = new LinkedHashMap<>();
-                for (Map.Entry<String, StepSummary> entry : states.entrySet()) {
-                    Path checksums = checksum.resolve("checksums." + entry.getKey());
-                    arguments.put(entry.getKey(), new BuildStepArgument(
-                            entry.getValue().folder(),
-                            consistent && Files.exists(checksums)
-                                    ? ChecksumStatus.diff(HashFunction.read(checksums), entry.getValue().checksums())
-                                    : ChecksumStatus.added(entry.getValue().checksums().keySet())));
-                }
-                if (!consistent
-                        || step.isAlwaysRun()
-                        || arguments.values().stream().anyMatch(BuildStepArgument::hasChanged)) {
-                    Path next = Files.createTempDirectory(identity);
-                    return step.apply(executor,
-                            new BuildStepContext(
+                BuildTrace.Span verification = trace.span("await");
+                CompletionStage<Verification> eager = execution.verifications().remove(identity);
+                return (eager == null ? verify(identity, executor) : eager.exceptionally(_ -> null).thenCompose(
+                        candidate -> {
+                            try {
+                                return candidate != null
+                                        && candidate.exists() == Files.exists(previous)
+                                        && Objects.equals(candidate.version(), toVersion(checksum.resolve("checksums")))
+                                        ? CompletableFuture.completedStage(candidate)
+                                        : verify(identity, executor);
+                            } catch (Throwable t) {
+                                return CompletableFuture.failedFuture(t);
+                            }
+                        })).thenComposeAsync(verified -> {
+                    verification.end();
+                    boolean exists = verified.exists(), consistent = verified.consistent();
+                    Map<Path, byte[]> current = verified.current();
+                    try {
+                        SequencedMap<String, BuildStepArgument> arguments = new LinkedHashMap<>();
+                        for (Map.Entry<String, StepSummary> entry : states.entrySet()) {
+                            Path checksums = checksum.resolve("checksums." + entry.getKey());
+                            arguments.put(entry.getKey(), new BuildStepArgument(
+                                    entry.getValue().folder(),
+                                    consistent && Files.exists(checksums)
+                                            ? ChecksumStatus.diff(
+                                                    HashFunction.read(checksums),
+                                                    entry.getValue().checksums())
+                                            : ChecksumStatus.added(entry.getValue().checksums().keySet()),
+                                    entry.getValue().checksums()));
+                        }
+                        boolean changed = arguments.values().stream().anyMatch(BuildStepArgument::hasChanged);
+                        if (execution.analysis() != null) {
+                            execution.analysis().put(identity, new BuildStepAnalysis(!exists
+                                    ? BuildStepAnalysis.Reason.MISSING
+                                    : !consistent ? BuildStepAnalysis.Reason.INCONSISTENT
+                                    : step.isAlwaysRun() ? BuildStepAnalysis.Reason.ALWAYS_RUN
+                                    : changed ? BuildStepAnalysis.Reason.CHANGED
+                                    : BuildStepAnalysis.Reason.UP_TO_DATE, arguments, new LinkedHashSet<>()));
+                            return CompletableFuture.completedStage(Map.of(
+                                    identity,
+                                    new StepSummary(output, current, verified.version())));
+                        } else if (!consistent || step.isAlwaysRun() || changed) {
+                            Path next = Files.createTempDirectory(
+                                    Files.createDirectories(root.resolve(STAGING)),
+                                    identity);
+                            BuildStepContext context = new BuildStepContext(
                                     consistent ? output : null,
                                     Files.createDirectory(next.resolve("output")),
-                                    Files.createDirectory(next.resolve("supplement"))),
-                            arguments).handleAsync((result, throwable) -> {
-                        try {
-                            if (throwable != null) {
-                                Files.delete(Files.walkFileTree(next, new RecursiveFolderDeletion(next)));
-                                throw throwable;
-                            } else if (result.next()) {
-                                Files.move(next, exists
-                                        ? Files.walkFileTree(previous, new RecursiveFolderDeletion(null))
-                                        : previous);
-                                Files.createDirectory(checksum);
-                            } else if (consistent) {
-                                Files.delete(Files.walkFileTree(next, new RecursiveFolderDeletion(next)));
-                                Files.walkFileTree(checksum, new RecursiveFolderDeletion(checksum));
-                            } else {
-                                throw new IllegalStateException("Cannot reuse non-existing location for " + identity);
-                            }
-                            for (Map.Entry<String, StepSummary> entry : states.entrySet()) {
-                                HashFunction.write(
-                                        checksum.resolve("checksums." + entry.getKey()),
-                                        entry.getValue().checksums());
-                            }
-                            Map<Path, byte[]> checksums = HashFunction.read(output, hash);
-                            HashFunction.write(checksum.resolve("checksums"), checksums);
-                            return Map.of(identity, new StepSummary(output, checksums));
-                        } catch (Throwable t) {
-                            throw new CompletionException(t);
+                                    Files.createDirectory(next.resolve("supplement")),
+                                    trace,
+                                    hash,
+                                    new ConcurrentHashMap<>());
+                            BuildCache cache = this.cache;
+                            String key = cache == null || step.isAlwaysRun()
+                                    ? null
+                                    : step.configuration().map(configuration -> toKey(
+                                            identity,
+                                            configuration,
+                                            states)).orElse(null);
+                            long started = System.nanoTime();
+                            AtomicBoolean applied = new AtomicBoolean();
+                            return (key == null
+                                    ? CompletableFuture.completedStage(false)
+                                    : restore(cache, key, context, executor)).thenComposeAsync(restored -> {
+                                if (restored) {
+                                    return CompletableFuture.completedStage(new BuildStepResult(true));
+                                }
+                                BuildTrace.Span application = trace.span("apply");
+                                applied.set(true);
+                                try {
+                                    return step.apply(executor, context, arguments).whenComplete((_, _) -> {
+                                        application.end();
+                                    });
+                                } catch (Throwable t) {
+                                    application.end();
+                                    return CompletableFuture.failedFuture(t);
+                                }
+                            }, executor).handleAsync((result, throwable) -> {
+                                try {
+                                    if (throwable != null) {
+                                        deletion.discard(next);
+                                        throw throwable;
+                                    }
+                                    if (applied.get()) {
+                                        durations.record(identity, System.nanoTime() - started);
+                                    }
+                                    if (result.next()) {
+                                        return true;
+                                    } else if (consistent) {
+                                        BuildTrace.Span commit = trace.span("commit");
+                                        deletion.discard(next);
+                                        writeArguments(checksum, states);
+                                        commit.end();
+                                        return false;
+                                    } else {
+                                        throw new IllegalStateException("Cannot reuse non-existing location for "
+                                                + identity);
+                                    }
+                                } catch (Throwable t) {
+                                    throw new CompletionException(t);
+                                }
+                            }, executor).thenCompose(replace -> {
+                                if (!replace) {
+                                    return CompletableFuture.completedStage(Map.of(
+                                            identity,
+                                            new StepSummary(output, current, verified.version())));
+                                }
+                                BuildTrace.Span hashing = trace.span("hash");
+                                Path staged = context.next();
+                                Map<Path, byte[]> known = context.checksums();
+                                HashFunction delegate = hash();
+                                FileStateCache fileStates = this.states;
+                                return HashFunction.read(staged, known.isEmpty() ? delegate : file -> {
+                                    byte[] digest = known.get(staged.relativize(file));
+                                    if (digest == null) {
+                                        return delegate.hash(file);
+                                    } else if (fileStates != null) {
+                                        fileStates.register(file, digest);
+                                    }
+                                    return digest.clone();
+                                }, executor).thenApplyAsync(checksums -> {
+                                    hashing.end();
+                                    BuildTrace.Span commit = trace.span("commit");
+                                    List<?> written;
+                                    try {
+                                        Path manifests = Files.createDirectory(next.resolve("checksum"));
+                                        writeArguments(manifests, states);
+                                        write(manifests.resolve("checksums"), checksums);
+                                        commit(identity, next);
+                                        written = toVersion(checksum.resolve("checksums"));
+                                        if (fileStates != null) {
+                                            for (Path file : checksums.keySet()) {
+                                                fileStates.relocate(staged.resolve(file), output.resolve(file));
+                                            }
+                                        }
+                                    } catch (Throwable t) {
+                                        throw new CompletionException(t);
+                                    } finally {
+                                        commit.end();
+                                    }
+                                    if (key != null) {
+                                        BiConsumer<String, Throwable> failures = this.failures;
+                                        execution.uploads().put(identity, CompletableFuture.runAsync(() -> {
+                                            try {
+                                                cache.store(key, output, checksums);
+                                            } catch (Throwable t) {
+                                                throw new CompletionException(t);
+                                            }
+                                        }, executor).exceptionally(throwable -> {
+                                            failures.accept(identity, throwable instanceof CompletionException
+                                                    && throwable.getCause() != null
+                                                    ? throwable.getCause()
+                                                    : throwable);
+                                            return null;
+                                        }));
+                                    }
+                                    return Map.of(identity, new StepSummary(output, checksums, written));
+                                }, executor);
+                            });
+                        } else {
+                            return CompletableFuture.completedStage(Map.of(
+                                    identity,
+                                    new StepSummary(output, current, verified.version())));
                         }
-                    }, executor);
-                } else {
-                    return CompletableFuture.completedStage(Map.of(identity, new StepSummary(output, current)));
-                }
+                    } catch (Throwable t) {
+                        return CompletableFuture.failedFuture(t);
+                    }
+                }, executor);
             } catch (Throwable t) {
                 return CompletableFuture.failedFuture(t);
             }
         };
     }
 
+    private CompletionStage<Verification> verify(String identity, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Path previous = root.resolve(identity), manifest = previous.resolve("checksum").resolve("checksums");
+                boolean exists = Files.exists(previous);
+                List<?> version = toVersion(manifest);
+                if (version == null) {
+                    return CompletableFuture.completedStage(new Verification(exists, null, Map.of(), false));
+                }
+                Map<Path, byte[]> current = HashFunction.read(manifest);
+                return HashFunction.areConsistent(previous.resolve("output"), current, hash(), executor).thenApply(
+                        consistent -> new Verification(exists, version, current, consistent));
+            } catch (Throwable t) {
+                throw new CompletionException(t);
+            }
+        }, executor).thenCompose(verification -> verification);
+    }
+
+    private boolean isCurrent(String identity, StepSummary summary) {
+        try {
+            return summary.version() != null
+                    && Files.isDirectory(summary.folder())
+                    && summary.version().equals(toVersion(root.resolve(identity)
+                    .resolve("checksum")
+                    .resolve("checksums")));
+        } catch (IOException _) {
+            return false;
+        }
+    }
+
+    private static List<?> toVersion(Path manifest) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(manifest, BasicFileAttributes.class);
+        } catch (NoSuchFileException _) {
+            return null;
+        }
+        return List.of(attributes.lastModifiedTime(), attributes.size(), Objects.toString(attributes.fileKey(), ""));
+    }
+
+    private CompletionStage<Boolean> restore(BuildCache cache,
+                                             String key,
+                                             BuildStepContext context,
+                                             Executor executor) {
+        Path folder = context.next();
+        BuildTrace.Span span = context.trace().span("restore");
+        Optional<Map<Path, byte[]>> checksums;
+        try {
+            checksums = cache.restore(key, folder);
+        } catch (Throwable _) {
+            checksums = Optional.empty();
+        }
+        Map<Path, byte[]> restored = checksums.orElse(null);
+        return (restored == null
+                ? CompletableFuture.completedStage(false)
+                : HashFunction.areConsistent(folder, restored, hash(), executor))
+                .exceptionally(_ -> false)
+                .thenApply(consistent -> {
+                    span.end();
+                    if (consistent) {
+                        context.checksums().putAll(restored);
+                    } else {
+                        try {
+                            Files.walkFileTree(folder, new RecursiveFolderDeletion(folder));
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }
+                    return consistent;
+                });
+    }
+
+    private static String toKey(String identity, String configuration, Map<String, StepSummary> states) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update((identity + "\0" + configuration + "\0").getBytes(StandardCharsets.UTF_8));
+        for (Map.Entry<String, StepSummary> state : new TreeMap<>(states).entrySet()) {
+            digest.update((state.getKey() + "\0").getBytes(StandardCharsets.UTF_8));
+            digest.update(((ChecksumTree) state.getValue().checksums()).digest(Path.of("")));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void writeArguments(Path folder, Map<String, StepSummary> states) throws IOException {
+        for (Map.Entry<String, StepSummary> entry : states.entrySet()) {
+            write(folder.resolve("checksums." + entry.getKey()), entry.getValue().checksums());
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "checksums.*")) {
+            for (Path file : stream) {
+                if (!states.containsKey(file.getFileName().toString().substring("checksums.".length()))) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private void commit(String identity, Path staged) throws IOException {
+        Path journal = Files.createDirectories(root.resolve(JOURNAL)).resolve(identity);
+        Path temporary = journal.resolveSibling(identity + ".tmp");
+        Files.writeString(temporary, root.relativize(staged).toString());
+        Files.move(temporary, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        replay(identity, staged);
+        Files.delete(journal);
+    }
+
+    private void replay(String identity, Path staged) throws IOException {
+        Path previous = root.resolve(identity);
+        if (Files.exists(previous)) {
+            deletion.discard(previous);
+        }
+        Files.move(staged, previous, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void write(Path file, Map<Path, byte[]> checksums) throws IOException {
+        if (binaryManifests) {
+            ChecksumManifest.write(file, checksums);
+        } else {
+            HashFunction.write(file, checksums);
+        }
+    }
+
     public CompletionStage<Map<String, Path>> execute(Executor executor) {
-        CompletionStage<Map<String, StepSummary>> initial = CompletableFuture.completedStage(Map.of());
-        Map<String, Registration> pending = new LinkedHashMap<>(registrations);
-        Map<String, CompletionStage<Map<String, StepSummary>>> dispatched = new LinkedHashMap<>();
-        while (!pending.isEmpty()) {
-            Iterator<Map.Entry<String, Registration>> it = pending.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<String, Registration> entry = it.next();
-                if (dispatched.keySet().containsAll(entry.getValue().dependencies())) {
-                    CompletionStage<Map<String, StepSummary>> completionStage = initial;
-                    for (String dependency : entry.getValue().dependencies()) {
-                        completionStage = completionStage.thenCombineAsync(
-                                dispatched.get(dependency),
-                                (left, right) -> Stream
-                                        .concat(left.entrySet().stream(), right.entrySet().stream())
-                                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)),
-                                executor);
+        return execute(executor, registrations, null);
+    }
+
+    public CompletionStage<Map<String, Path>> execute(Executor executor, String... targets) {
+        return targets.length == 0 ? execute(executor) : execute(executor, select(targets), null);
+    }
+
+    public CompletionStage<SequencedMap<String, BuildStepAnalysis>> analyze(Executor executor, String... targets) {
+        Map<String, Registration> registrations = targets.length == 0 ? this.registrations : select(targets);
+        Map<String, BuildStepAnalysis> analysis = new ConcurrentHashMap<>();
+        return run(new Execution(executor,
+                null,
+                analysis,
+                new ConcurrentHashMap<>(),
+                new ConcurrentHashMap<>()), registrations, null).thenApply(_ -> {
+            SequencedMap<String, BuildStepAnalysis> analyses = new LinkedHashMap<>();
+            registrations.forEach((identity, registration) -> {
+                BuildStepAnalysis current = analysis.get(identity);
+                if (current == null) {
+                    return;
+                }
+                SequencedSet<String> invalidations = new LinkedHashSet<>();
+                for (String dependency : registration.dependencies()) {
+                    BuildStepAnalysis upstream = analyses.get(dependency);
+                    if (upstream != null) {
+                        invalidations.addAll(upstream.invalidations());
+                        if (!upstream.isUpToDate()) {
+                            invalidations.add(dependency);
+                        }
                     }
-                    dispatched.put(entry.getKey(), completionStage.thenComposeAsync(input -> entry.getValue()
-                            .step()
-                            .apply(executor, input), executor));
-                    it.remove();
                 }
+                analyses.put(identity, new BuildStepAnalysis(current.isUpToDate() && !invalidations.isEmpty()
+                        ? BuildStepAnalysis.Reason.INVALIDATED
+                        : current.reason(), current.arguments(), invalidations));
+            });
+            return analyses;
+        });
+    }
+
+    private SequencedMap<String, Registration> select(String... targets) {
+        Set<String> closure = new HashSet<>();
+        Queue<String> queue = new ArrayDeque<>();
+        for (String target : targets) {
+            if (!registrations.containsKey(target)) {
+                throw new IllegalArgumentException("Unknown step: " + target);
+            }
+            if (closure.add(target)) {
+                queue.add(target);
             }
         }
-        CompletionStage<Map<String, Path>> result = CompletableFuture.completedStage(Map.of());
-        for (String identity : registrations.keySet()) {
-            result = result.thenCombineAsync(dispatched.get(identity), (left, right) -> {
-                Map<String, Path> folders = new LinkedHashMap<>(left); // TODO: return more complex result.
-                for (Map.Entry<String, StepSummary> entry : right.entrySet()) {
-                    folders.put(entry.getKey(), entry.getValue().folder());
+        while (!queue.isEmpty()) {
+            for (String dependency : registrations.get(queue.remove()).dependencies()) {
+                if (closure.add(dependency)) {
+                    queue.add(dependency);
                 }
-                return folders;
-            }, executor);
+            }
         }
-        return result;
+        SequencedMap<String, Registration> selection = new LinkedHashMap<>();
+        registrations.forEach((identity, registration) -> {
+            if (closure.contains(identity)) {
+                selection.put(identity, registration);
+            }
+        });
+        return selection;
     }
 
-    private record Registration(BiFunction<Executor,
-            Map<String, StepSummary>,
-            CompletionStage<Map<String, StepSummary>>> step, Set<String> dependencies) {
+    public BuildWatcher watch(Executor executor, BiConsumer<Map<String, Path>, Throwable> listener) throws IOException {
+        return BuildWatcher.start(this, sources, executor, listener);
+    }
+
+    CompletionStage<Map<String, Path>> execute(Executor executor, Map<String, Set<Path>> changes) {
+        return execute(executor, registrations, changes);
+    }
+
+    CompletionStage<Map<String, Path>> rebuild(Executor executor) {
+        Map<String, StepSummary> summaries = this.summaries;
+        if (summaries == null || !summaries.keySet().containsAll(sources.keySet())) {
+            return execute(executor, registrations, null);
+        }
+        CompletionStage<Map<String, Set<Path>>> changes = CompletableFuture.completedStage(new LinkedHashMap<>());
+        for (Map.Entry<String, Path> entry : sources.entrySet()) {
+            Map<Path, byte[]> previous = summaries.get(entry.getKey()).checksums();
+            changes = changes.thenCombine(HashFunction.read(entry.getValue(), hash(), executor), (map, checksums) -> {
+                Set<Path> paths = ChecksumStatus.diff(previous, checksums).changes().keySet();
+                if (!paths.isEmpty()) {
+                    map.put(entry.getKey(), paths);
+                }
+                return map;
+            });
+        }
+        return changes.thenCompose(map -> execute(executor, registrations, map));
+    }
+
+    private CompletionStage<Map<String, Path>> execute(Executor executor,
+                                                       Map<String, Registration> registrations,
+                                                       Map<String, Set<Path>> changes) {
+        Path file = trace;
+        Execution execution = new Execution(executor,
+                file == null ? null : new ChromeTrace(),
+                null,
+                new ConcurrentHashMap<>(),
+                new ConcurrentHashMap<>());
+        return run(execution, registrations, changes).thenApply(results -> {
+            Map<String, Path> folders = new LinkedHashMap<>(); // TODO: return more complex result.
+            results.forEach((identity, summary) -> folders.put(identity, summary.folder()));
+            return folders;
+        });
+    }
+
+    private CompletionStage<Map<String, StepSummary>> run(Execution execution,
+                                                          Map<String, Registration> registrations,
+                                                          Map<String, Set<Path>> changes) {
+        Executor executor = execution.executor();
+        BuildLocks.Lock lock;
+        try {
+            if (execution.analysis() == null) {
+                recover();
+                lock = locks.share();
+            } else {
+                lock = () -> {
+                };
+            }
+        } catch (Throwable t) {
+            return CompletableFuture.failedFuture(t);
+        }
+        Map<String, StepSummary> summaries = this.summaries;
+        Map<String, BiFunction<Execution,
+                Map<String, StepSummary>,
+                CompletionStage<Map<String, StepSummary>>>> overrides = new HashMap<>();
+        if (changes != null && summaries != null && summaries.keySet().equals(registrations.keySet())) {
+            Set<String> invalidated = new HashSet<>(changes.keySet());
+            registrations.forEach((identity, registration) -> {
+                if (registration.alwaysRun()
+                        || registration.dependencies().stream().anyMatch(invalidated::contains)
+                        || !sources.containsKey(identity) && !isCurrent(identity, summaries.get(identity))) {
+                    invalidated.add(identity);
+                }
+            });
+            registrations.keySet().forEach(identity -> {
+                StepSummary summary = summaries.get(identity);
+                if (!invalidated.contains(identity)) {
+                    overrides.put(identity, (_, _) -> CompletableFuture.completedStage(Map.of(identity, summary)));
+                } else if (changes.containsKey(identity) && sources.containsKey(identity)) {
+                    overrides.put(identity, (_, _) -> CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return Map.of(identity, rehash(summary, changes.get(identity)));
+                        } catch (Throwable t) {
+                            throw new CompletionException(t);
+                        }
+                    }, executor));
+                }
+            });
+        }
+        registrations.keySet().forEach(identity -> {
+            if (!sources.containsKey(identity) && !overrides.containsKey(identity)) {
+                BuildTrace.Span span = execution.trace(identity).span("verify");
+                execution.verifications().put(identity, verify(identity, executor).whenComplete((_, _) -> span.end()));
+            }
+        });
+        FileStateCache states = this.states;
+        Path file = trace;
+        StepScheduler scheduler = new StepScheduler(executor, parallelism, capacities);
+        SequencedMap<String, Set<String>> dependencies = new LinkedHashMap<>();
+        registrations.forEach((identity, registration) -> dependencies.put(identity, registration.dependencies()));
+        Map<String, Long> priorities = durations.toPriorities(dependencies);
+        return dispatch(execution, registrations, scheduler, priorities, overrides).handle((results, throwable) -> {
+            CompletableFuture<?>[] uploads = execution.uploads().values().toArray(CompletableFuture<?>[]::new);
+            return CompletableFuture.allOf(uploads).handleAsync((_, _) -> {
+                try (BuildLocks.Lock _ = lock) {
+                    if (execution.analysis() == null) {
+                        this.summaries = throwable == null ? results : null;
+                        if (states != null) {
+                            states.persist();
+                        }
+                        durations.persist();
+                        if (file != null && execution.trace() != null) {
+                            execution.trace().write(file);
+                        }
+                    }
+                } catch (Throwable t) {
+                    if (throwable == null) {
+                        throw new CompletionException(t);
+                    }
+                    throwable.addSuppressed(t);
+                }
+                if (throwable != null) {
+                    throw throwable instanceof CompletionException exception
+                            ? exception
+                            : new CompletionException(throwable);
+                }
+                return results;
+            }, executor);
+        }).thenCompose(stage -> stage);
     }
 
-    private record StepSummary(Path folder, Map<Path, byte[]> checksums) {
+    private synchronized void recover() throws IOException {
+        if (!recovered) {
+            recovered = locks.tryExclusive(this::replay);
+        }
     }
 
-    private static class RecursiveFolderDeletion extends SimpleFileVisitor<Path> {
+    private void replay() throws IOException {
+        Path journal = root.resolve(JOURNAL), staging = root.resolve(STAGING);
+        if (Files.isDirectory(journal)) {
+            List<Path> entries = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(journal)) {
+                stream.forEach(entries::add);
+            }
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (!name.endsWith(".tmp")) {
+                    Path staged = root.resolve(Files.readString(entry));
+                    if (Files.exists(staged.resolve("checksum").resolve("checksums"))) {
+                        replay(name, staged);
+                    }
+                }
+                Files.delete(entry);
+            }
+        }
+        if (Files.isDirectory(staging)) {
+            List<Path> paths = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(staging)) {
+                stream.forEach(paths::add);
+            }
+            for (Path path : paths) {
+                deletion.discard(path);
+            }
+        }
+        deletion.purge();
+    }
 
-        private final Path root;
+    private StepSummary rehash(StepSummary summary, Set<Path> changes) throws IOException {
+        Map<Path, byte[]> checksums = new LinkedHashMap<>(summary.checksums());
+        for (Path change : changes) {
+            Path file = summary.folder().resolve(change);
+            if (checksums.remove(change) == null && !Files.isRegularFile(file)) {
+                checksums.keySet().removeIf(path -> change.toString().isEmpty() || path.startsWith(change));
+            }
+            if (Files.isRegularFile(file)) {
+                checksums.put(change, hash().hash(file));
+            } else if (Files.isDirectory(file)) {
+                try (Stream<Path> files = Files.walk(file)) {
+                    for (Path candidate : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                        checksums.put(summary.folder().relativize(candidate), hash().hash(candidate));
+                    }
+                }
+            }
+        }
+        return new StepSummary(summary.folder(), checksums, null);
+    }
 
-        private RecursiveFolderDeletion(Path root) {
-            this.root = root;
+    private CompletionStage<Map<String, StepSummary>> dispatch(Execution execution,
+                                                               Map<String, Registration> registrations,
+                                                               StepScheduler scheduler,
+                                                               Map<String, Long> priorities,
+                                                               Map<String, BiFunction<Execution,
+                                                                       Map<String, StepSummary>,
+                                                                       CompletionStage<Map<String, StepSummary>>>> overrides) {
+        Map<String, List<String>> dependents = new HashMap<>();
+        Map<String, AtomicInteger> indegrees = new HashMap<>();
+        Map<String, BuildTrace.Span> waits = new HashMap<>();
+        registrations.forEach((identity, registration) -> {
+            dependents.put(identity, new ArrayList<>());
+            indegrees.put(identity, new AtomicInteger(registration.dependencies().size()));
+            registration.dependencies().forEach(dependency -> dependents.get(dependency).add(identity));
+            waits.put(identity, execution.trace(identity).span("wait"));
+        });
+        Map<String, StepSummary> summaries = new ConcurrentHashMap<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CompletableFuture<Map<String, StepSummary>> result = new CompletableFuture<>();
+        Runnable complete = () -> {
+            Throwable throwable = failure.get();
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                SequencedMap<String, StepSummary> ordered = new LinkedHashMap<>();
+                registrations.keySet().forEach(identity -> ordered.put(identity, summaries.get(identity)));
+                result.complete(ordered);
+            }
+        };
+        Consumer<String> launch = new Consumer<>() {
+            @Override
+            public void accept(String identity) {
+                Registration registration = registrations.get(identity);
+                Map<String, StepSummary> input = new LinkedHashMap<>();
+                registration.dependencies().forEach(dependency -> input.put(dependency, summaries.get(dependency)));
+                BiFunction<Execution,
+                        Map<String, StepSummary>,
+                        CompletionStage<Map<String, StepSummary>>> override = overrides.get(identity);
+                waits.get(identity).end();
+                BuildTrace.Span queueing = execution.trace(identity).span("queued");
+                running.incrementAndGet();
+                scheduler.submit(priorities.get(identity), override == null && execution.analysis() == null
+                        ? registration.resources()
+                        : Map.of(), () -> {
+                    queueing.end();
+                    if (failure.get() != null) {
+                        return CompletableFuture.completedStage(Map.of());
+                    }
+                    return (override == null
+                            ? registration.step()
+                            : override).apply(execution, Collections.unmodifiableMap(input));
+                }).whenComplete((output, throwable) -> {
+                    if (throwable != null) {
+                        failure.compareAndSet(null, throwable);
+                    } else if (failure.get() == null) {
+                        summaries.putAll(output);
+                        for (String dependent : dependents.get(identity)) {
+                            if (indegrees.get(dependent).decrementAndGet() == 0) {
+                                accept(dependent);
+                            }
+                        }
+                    }
+                    if (running.decrementAndGet() == 0) {
+                        complete.run();
+                    }
+                });
+            }
+        };
+        running.incrementAndGet();
+        registrations.forEach((identity, registration) -> {
+            if (registration.dependencies().isEmpty()) {
+                launch.accept(identity);
+            }
+        });
+        scheduler.start();
+        if (running.decrementAndGet() == 0) {
+            complete.run();
         }
+        return result;
+    }
+
+    private record Registration(BiFunction<Execution,
+            Map<String, StepSummary>,
+            CompletionStage<Map<String, StepSummary>>> step,
+                                Set<String> dependencies,
+                                Map<String, Long> resources,
+                                boolean alwaysRun) {
+    }
 
-        @Override
-        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-            Files.delete(file);
-            return FileVisitResult.CONTINUE;
+    private record Execution(Executor executor,
+                             ChromeTrace trace,
+                             Map<String, BuildStepAnalysis> analysis,
+                             Map<String, CompletionStage<Verification>> verifications,
+                             Map<String, CompletableFuture<?>> uploads) {
+
+        BuildTrace trace(String identity) {
+            return trace == null ? BuildTrace.none() : trace.of(identity);
         }
+    }
+
+    private record Verification(boolean exists, List<?> version, Map<Path, byte[]> current, boolean consistent) {
+    }
+
+    private record StepSummary(Path folder, Map<Path, byte[]> checksums, List<?> version) {
 
-        @Override
-        public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-            if (!dir.equals(root)) {
-                Files.delete(dir);
+        private StepSummary {
+            if (!(checksums instanceof ChecksumTree)) {
+                checksums = ChecksumTable.of(checksums);
             }
-            return FileVisitResult.CONTINUE;
         }
     }
 }
@@ -0,0 +1,145 @@
+package build.buildbuddy;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+class BuildLocks {
+
+    private static final Map<Path, BuildLocks> INSTANCES = new ConcurrentHashMap<>();
+
+    private final Path folder;
+    private final Map<String, CompletableFuture<Void>> steps = new ConcurrentHashMap<>();
+
+    private FileChannel channel;
+    private FileLock shared;
+    private int holders;
+
+    private BuildLocks(Path folder) {
+        this.folder = folder;
+    }
+
+    static BuildLocks of(Path folder) {
+        return INSTANCES.computeIfAbsent(folder.toAbsolutePath().normalize(), BuildLocks::new);
+    }
+
+    synchronized boolean tryExclusive(Recovery recovery) throws IOException {
+        if (holders > 0) {
+            return false;
+        }
+        try (FileChannel channel = open(folder.resolve("build.lock"))) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return false;
+            }
+            try (lock) {
+                recovery.recover();
+            }
+            return true;
+        }
+    }
+
+    synchronized Lock share() throws IOException {
+        if (holders == 0) {
+            channel = open(folder.resolve("build.lock"));
+            try {
+                shared = channel.lock(0, Long.MAX_VALUE, true);
+            } catch (Throwable t) {
+                channel.close();
+                throw t;
+            }
+        }
+        holders++;
+        return () -> {
+            synchronized (this) {
+                if (--holders == 0) {
+                    try (FileChannel _ = channel) {
+                        shared.release();
+                    }
+                }
+            }
+        };
+    }
+
+    CompletionStage<Lock> step(String identity, Executor executor) {
+        CompletableFuture<Void> released = new CompletableFuture<>();
+        CompletableFuture<Void> previous = steps.put(identity, released);
+        return (previous == null ? CompletableFuture.<Void>completedFuture(null) : previous).thenComposeAsync(_ -> {
+            try {
+                FileChannel channel = open(folder.resolve(identity + ".lock"));
+                CompletableFuture<FileLock> acquired;
+                try {
+                    FileLock lock = channel.tryLock();
+                    acquired = lock == null ? CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return channel.lock();
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, task -> Thread.ofVirtual().name("build-lock-" + identity).start(task)).thenApplyAsync(
+                            candidate -> candidate,
+                            executor) : CompletableFuture.completedFuture(lock);
+                } catch (Throwable t) {
+                    channel.close();
+                    throw t;
+                }
+                return acquired.handle((lock, throwable) -> {
+                    if (throwable != null) {
+                        try {
+                            channel.close();
+                        } catch (IOException e) {
+                            throwable.addSuppressed(e);
+                        } finally {
+                            release(identity, released);
+                        }
+                        throw throwable instanceof CompletionException exception
+                                ? exception
+                                : new CompletionException(throwable);
+                    }
+                    return (Lock) () -> {
+                        try (channel) {
+                            lock.release();
+                        } finally {
+                            release(identity, released);
+                        }
+                    };
+                });
+            } catch (Throwable t) {
+                release(identity, released);
+                throw new CompletionException(t);
+            }
+        }, executor);
+    }
+
+    private void release(String identity, CompletableFuture<Void> released) {
+        steps.remove(identity, released);
+        released.complete(null);
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @FunctionalInterface
+    interface Lock extends AutoCloseable {
+
+        @Override
+        void close() throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Recovery {
+
+        void recover() throws IOException;
+    }
+}
@@ -2,6 +2,8 @@ package build.buildbuddy;
 
 import java.io.IOException;
 import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 import java.util.SequencedMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
@@ -13,11 +15,20 @@ public interface BuildStep {
 
     String SOURCES = "sources/", RESOURCES = "resources/", CLASSES = "classes/", ARTIFACTS = "artifacts/";
     String COORDINATES = "coordinates.properties", DEPENDENCIES = "dependencies.properties";
+    String CPU = "cpu", MEMORY = "memory", JVM_FORK = "jvm-fork";
 
     default boolean isAlwaysRun() {
         return false;
     }
 
+    default Optional<String> configuration() {
+        return Optional.empty();
+    }
+
+    default Map<String, Long> resources() {
+        return Map.of();
+    }
+
     CompletionStage<BuildStepResult> apply(Executor executor,
                                            BuildStepContext context,
                                            SequencedMap<String, BuildStepArgument> arguments) throws IOException;
@@ -29,6 +40,17 @@ public interface BuildStep {
                 return BuildStep.this.isAlwaysRun();
             }
 
+            @Override
+            public Optional<String> configuration() {
+                return BuildStep.this.configuration().map(configuration -> configuration
+                        + " without " + String.join(",", identities));
+            }
+
+            @Override
+            public Map<String, Long> resources() {
+                return BuildStep.this.resources();
+            }
+
             @Override
             public CompletionStage<BuildStepResult> apply(Executor executor,
                                                           BuildStepContext context,
@@ -0,0 +1,18 @@
+package build.buildbuddy;
+
+import java.util.SequencedMap;
+import java.util.SequencedSet;
+
+public record BuildStepAnalysis(Reason reason,
+                                SequencedMap<String, BuildStepArgument> arguments,
+                                SequencedSet<String> invalidations) {
+
+    public boolean isUpToDate() {
+        return reason == Reason.UP_TO_DATE;
+    }
+
+    public enum Reason {
+
+        UP_TO_DATE, MISSING, INCONSISTENT, ALWAYS_RUN, CHANGED, INVALIDATED
+    }
+}
@@ -1,11 +1,60 @@
 package build.buildbuddy;
 
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Objects;
 
-public record BuildStepArgument(Path folder, Map<Path, ChecksumStatus> files) {
+public record BuildStepArgument(Path folder,
+                                Map<Path, ChecksumStatus> files,
+                                Map<Path, byte[]> checksums,
+                                FileInventory inventory) {
+
+    public BuildStepArgument(Path folder, Map<Path, ChecksumStatus> files) {
+        this(folder, files, Map.of());
+    }
+
+    public BuildStepArgument(Path folder, Map<Path, ChecksumStatus> files, Map<Path, byte[]> checksums) {
+        this(folder, files, checksums, new FileInventory(() -> checksums.isEmpty()
+                ? files.entrySet().stream()
+                .filter(entry -> entry.getValue() != ChecksumStatus.REMOVED)
+                .map(Map.Entry::getKey)
+                .toList()
+                : checksums.keySet()));
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof BuildStepArgument argument)
+                || !folder.equals(argument.folder)
+                || !files.equals(argument.files)
+                || checksums.size() != argument.checksums.size()) {
+            return false;
+        }
+        for (Map.Entry<Path, byte[]> entry : checksums.entrySet()) {
+            if (!Arrays.equals(entry.getValue(), argument.checksums.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Objects.hash(folder, files);
+        for (Map.Entry<Path, byte[]> entry : checksums.entrySet()) {
+            hash += entry.getKey().hashCode() ^ Arrays.hashCode(entry.getValue());
+        }
+        return hash;
+    }
 
     public boolean hasChanged() {
+        if (files instanceof ChecksumDiff diff) {
+            return diff.hasChanged();
+        }
         return files.values().stream().anyMatch(status -> status != ChecksumStatus.RETAINED);
     }
 }
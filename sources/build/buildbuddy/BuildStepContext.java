@@ -1,6 +1,21 @@
 package build.buildbuddy;
 
 import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-public record BuildStepContext(Path previous, Path next, Path supplement) {
+public record BuildStepContext(Path previous,
+                               Path next,
+                               Path supplement,
+                               BuildTrace trace,
+                               HashFunction hash,
+                               Map<Path, byte[]> checksums) {
+
+    public BuildStepContext(Path previous, Path next, Path supplement) {
+        this(previous, next, supplement, BuildTrace.none());
+    }
+
+    public BuildStepContext(Path previous, Path next, Path supplement, BuildTrace trace) {
+        this(previous, next, supplement, trace, null, new ConcurrentHashMap<>());
+    }
 }
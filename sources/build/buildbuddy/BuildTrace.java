@@ -0,0 +1,18 @@
+package build.buildbuddy;
+
+@FunctionalInterface
+public interface BuildTrace {
+
+    Span span(String phase);
+
+    static BuildTrace none() {
+        return _ -> () -> {
+        };
+    }
+
+    @FunctionalInterface
+    interface Span {
+
+        void end();
+    }
+}
@@ -0,0 +1,137 @@
+package build.buildbuddy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+public class BuildWatcher implements Closeable {
+
+    private static final long QUIESCENCE = 50;
+
+    private final BuildExecutor buildExecutor;
+    private final Executor executor;
+    private final BiConsumer<Map<String, Path>, Throwable> listener;
+    private final WatchService service;
+
+    private final Map<WatchKey, Target> targets = new ConcurrentHashMap<>();
+    private Thread thread;
+
+    private BuildWatcher(BuildExecutor buildExecutor,
+                         Executor executor,
+                         BiConsumer<Map<String, Path>, Throwable> listener,
+                         WatchService service) {
+        this.buildExecutor = buildExecutor;
+        this.executor = executor;
+        this.listener = listener;
+        this.service = service;
+    }
+
+    static BuildWatcher start(BuildExecutor buildExecutor,
+                              Map<String, Path> sources,
+                              Executor executor,
+                              BiConsumer<Map<String, Path>, Throwable> listener) throws IOException {
+        BuildWatcher watcher = new BuildWatcher(buildExecutor,
+                executor,
+                listener,
+                FileSystems.getDefault().newWatchService());
+        try {
+            for (Map.Entry<String, Path> entry : sources.entrySet()) {
+                watcher.register(entry.getKey(), entry.getValue(), entry.getValue());
+            }
+        } catch (Throwable t) {
+            watcher.service.close();
+            throw t;
+        }
+        watcher.thread = Thread.ofPlatform().name("build-watcher").daemon().start(watcher::run);
+        return watcher;
+    }
+
+    private void register(String identity, Path root, Path folder) throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        try (Stream<Path> folders = Files.walk(folder)) {
+            for (Path candidate : (Iterable<Path>) folders.filter(Files::isDirectory)::iterator) {
+                targets.put(candidate.register(service,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY), new Target(identity, root, candidate));
+            }
+        }
+    }
+
+    private void run() {
+        Map<String, Set<Path>> changes = null;
+        try {
+            do {
+                Map<String, Path> folders;
+                try {
+                    folders = buildExecutor.execute(executor, changes).toCompletableFuture().join();
+                } catch (Throwable t) {
+                    listener.accept(null, t);
+                    continue;
+                }
+                listener.accept(folders, null);
+            } while ((changes = await()) != null);
+        } catch (ClosedWatchServiceException | InterruptedException _) {
+        }
+    }
+
+    private Map<String, Set<Path>> await() throws InterruptedException {
+        Map<String, Set<Path>> changes = new LinkedHashMap<>();
+        WatchKey key = service.take();
+        do {
+            collect(key, changes);
+        } while ((key = service.poll(QUIESCENCE, TimeUnit.MILLISECONDS)) != null);
+        return changes;
+    }
+
+    private void collect(WatchKey key, Map<String, Set<Path>> changes) {
+        Target target = targets.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (target == null) {
+                continue;
+            }
+            Set<Path> paths = changes.computeIfAbsent(target.identity(), _ -> new LinkedHashSet<>());
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                paths.add(Path.of(""));
+                continue;
+            }
+            Path file = target.folder().resolve((Path) event.context());
+            paths.add(target.root().relativize(file));
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                try {
+                    register(target.identity(), target.root(), file);
+                } catch (IOException _) {
+                    paths.add(Path.of(""));
+                }
+            }
+        }
+        if (!key.reset()) {
+            targets.remove(key);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private record Target(String identity, Path root, Path folder) {
+    }
+}
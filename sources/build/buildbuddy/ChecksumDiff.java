@@ -0,0 +1,79 @@
+package build.buildbuddy;
+
+import java.nio.file.Path;
+import java.util.*;
+
+public class ChecksumDiff extends AbstractMap<Path, ChecksumStatus> {
+
+    private final Set<Path> baseline;
+    private final ChecksumStatus fallback;
+    private final Map<Path, ChecksumStatus> changes;
+    private final int removed;
+
+    ChecksumDiff(Set<Path> baseline, ChecksumStatus fallback, Map<Path, ChecksumStatus> changes, int removed) {
+        this.baseline = baseline;
+        this.fallback = fallback;
+        this.changes = changes;
+        this.removed = removed;
+    }
+
+    public boolean hasChanged() {
+        return !changes.isEmpty() || fallback != ChecksumStatus.RETAINED && !baseline.isEmpty();
+    }
+
+    public Map<Path, ChecksumStatus> changes() {
+        return fallback == ChecksumStatus.RETAINED ? Collections.unmodifiableMap(changes) : this;
+    }
+
+    @Override
+    public ChecksumStatus get(Object key) {
+        ChecksumStatus status = changes.get(key);
+        if (status == null && baseline.contains(key)) {
+            return fallback;
+        }
+        return status;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return changes.containsKey(key) || baseline.contains(key);
+    }
+
+    @Override
+    public int size() {
+        return baseline.size() + removed;
+    }
+
+    @Override
+    public Set<Entry<Path, ChecksumStatus>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Path, ChecksumStatus>> iterator() {
+                Iterator<Path> retained = baseline.iterator();
+                Iterator<Entry<Path, ChecksumStatus>> dropped = changes.entrySet().stream()
+                        .filter(entry -> entry.getValue() == ChecksumStatus.REMOVED)
+                        .iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return retained.hasNext() || dropped.hasNext();
+                    }
+
+                    @Override
+                    public Entry<Path, ChecksumStatus> next() {
+                        if (retained.hasNext()) {
+                            Path path = retained.next();
+                            return Map.entry(path, changes.getOrDefault(path, fallback));
+                        }
+                        return Map.entry(dropped.next().getKey(), ChecksumStatus.REMOVED);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ChecksumDiff.this.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,257 @@
+package build.buildbuddy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class ChecksumManifest extends AbstractMap<Path, byte[]> implements ChecksumTree {
+
+    static final int MAGIC = 0x0042424D, HEADER = 12;
+
+    private final ByteBuffer buffer;
+    private final int size, width, digests, paths;
+    private final int folders, folderWidth, folderOffsets, folderDigests, folderPaths;
+
+    private volatile SortedMap<Path, byte[]> tree;
+
+    private ChecksumManifest(ByteBuffer buffer) {
+        this.buffer = buffer;
+        size = buffer.getInt(4);
+        width = buffer.getInt(8);
+        digests = HEADER + (size + 1) * Integer.BYTES;
+        paths = digests + size * width;
+        int end = paths + offset(HEADER, size);
+        if (buffer.limit() > end) {
+            folders = buffer.getInt(end);
+            folderWidth = buffer.getInt(end + Integer.BYTES);
+            folderOffsets = end + 2 * Integer.BYTES;
+            folderDigests = folderOffsets + (folders + 1) * Integer.BYTES;
+            folderPaths = folderDigests + folders * folderWidth;
+        } else {
+            folders = -1;
+            folderWidth = folderOffsets = folderDigests = folderPaths = 0;
+        }
+    }
+
+    public static Optional<ChecksumManifest> of(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            if (channel.size() < HEADER || channel.read(magic, 0) < Integer.BYTES || magic.getInt(0) != MAGIC) {
+                return Optional.empty();
+            }
+            return Optional.of(new ChecksumManifest(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+        }
+    }
+
+    public static void write(Path file, Map<Path, byte[]> checksums) throws IOException {
+        if (checksums instanceof ChecksumManifest manifest && manifest.folders != -1) {
+            write(file, manifest.buffer.duplicate());
+            return;
+        }
+        List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>(checksums.size());
+        int width = -1, length = 0;
+        for (Map.Entry<Path, byte[]> entry : checksums.entrySet()) {
+            if (width == -1) {
+                width = entry.getValue().length;
+            } else if (width != entry.getValue().length) {
+                throw new IllegalArgumentException("Checksums of different length: " + entry.getKey());
+            }
+            byte[] path = entry.getKey().toString().getBytes(StandardCharsets.UTF_8);
+            entries.add(Map.entry(path, entry.getValue()));
+            length += path.length;
+        }
+        entries.sort((left, right) -> Arrays.compareUnsigned(left.getKey(), right.getKey()));
+        width = Math.max(width, 0);
+        List<Map.Entry<byte[], byte[]>> folders = new ArrayList<>();
+        int folderLength = 0;
+        for (Map.Entry<Path, byte[]> entry : (checksums instanceof ChecksumTable table
+                ? table.tree()
+                : ChecksumTree.digests(checksums)).entrySet()) {
+            byte[] path = entry.getKey().toString().getBytes(StandardCharsets.UTF_8);
+            folders.add(Map.entry(path, entry.getValue()));
+            folderLength += path.length;
+        }
+        folders.sort((left, right) -> Arrays.compareUnsigned(left.getKey(), right.getKey()));
+        int folderWidth = folders.getFirst().getValue().length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER
+                + (entries.size() + 1) * Integer.BYTES
+                + entries.size() * width
+                + length
+                + 2 * Integer.BYTES
+                + (folders.size() + 1) * Integer.BYTES
+                + folders.size() * folderWidth
+                + folderLength);
+        buffer.putInt(MAGIC).putInt(entries.size()).putInt(width);
+        put(buffer, entries);
+        buffer.putInt(folders.size()).putInt(folderWidth);
+        put(buffer, folders);
+        write(file, buffer.flip());
+    }
+
+    private static void write(Path file, ByteBuffer buffer) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void put(ByteBuffer buffer, List<Map.Entry<byte[], byte[]>> entries) {
+        int offset = 0;
+        for (Map.Entry<byte[], byte[]> entry : entries) {
+            buffer.putInt(offset);
+            offset += entry.getKey().length;
+        }
+        buffer.putInt(offset);
+        entries.forEach(entry -> buffer.put(entry.getValue()));
+        entries.forEach(entry -> buffer.put(entry.getKey()));
+    }
+
+    public int indexOf(Path path) {
+        return search(HEADER, paths, size, path);
+    }
+
+    public Path path(int index) {
+        int start = offset(HEADER, index), end = offset(HEADER, index + 1);
+        byte[] path = new byte[end - start];
+        buffer.get(paths + start, path);
+        return Path.of(new String(path, StandardCharsets.UTF_8));
+    }
+
+    public byte[] checksum(int index) {
+        byte[] checksum = new byte[width];
+        buffer.get(digests + index * width, checksum);
+        return checksum;
+    }
+
+    boolean matches(int index, byte[] checksum) {
+        return width == checksum.length
+                && buffer.slice(digests + index * width, width).equals(ByteBuffer.wrap(checksum));
+    }
+
+    int end(Path folder) {
+        byte[] key = (folder + "0").getBytes(StandardCharsets.UTF_8);
+        int low = 0, high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(HEADER, paths, middle, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public byte[] digest(Path folder) {
+        if (folders == -1) {
+            SortedMap<Path, byte[]> tree = this.tree;
+            if (tree == null) {
+                tree = this.tree = ChecksumTree.digests(this);
+            }
+            byte[] digest = tree.get(folder);
+            return digest == null ? null : digest.clone();
+        }
+        int index = search(folderOffsets, folderPaths, folders, folder);
+        if (index == -1) {
+            return null;
+        }
+        byte[] digest = new byte[folderWidth];
+        buffer.get(folderDigests + index * folderWidth, digest);
+        return digest;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Path path && indexOf(path) != -1;
+    }
+
+    @Override
+    public byte[] get(Object key) {
+        if (key instanceof Path path) {
+            int index = indexOf(path);
+            return index == -1 ? null : checksum(index);
+        }
+        return null;
+    }
+
+    @Override
+    public Set<Entry<Path, byte[]>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Path, byte[]>> iterator() {
+                return new Iterator<>() {
+
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < size;
+                    }
+
+                    @Override
+                    public Entry<Path, byte[]> next() {
+                        if (index == size) {
+                            throw new NoSuchElementException();
+                        }
+                        int current = index++;
+                        return new SimpleImmutableEntry<>(path(current), checksum(current));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int search(int offsets, int paths, int size, Path path) {
+        byte[] key = path.toString().getBytes(StandardCharsets.UTF_8);
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1, comparison = compare(offsets, paths, middle, key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int offset(int offsets, int index) {
+        return buffer.getInt(offsets + index * Integer.BYTES);
+    }
+
+    private int compare(int offsets, int paths, int index, byte[] key) {
+        int start = paths + offset(offsets, index), length = paths + offset(offsets, index + 1) - start;
+        for (int position = 0; position < Math.min(length, key.length); position++) {
+            int comparison = Byte.compareUnsigned(buffer.get(start + position), key[position]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+}
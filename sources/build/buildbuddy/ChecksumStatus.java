@@ -2,6 +2,7 @@ package build.buildbuddy;
 
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -10,28 +11,120 @@ public enum ChecksumStatus {
 
     ADDED, REMOVED, ALTERED, RETAINED;
 
-    public static Map<Path, ChecksumStatus> diff(Map<Path, byte[]> expected, Map<Path, byte[]> actual) {
-        Map<Path, ChecksumStatus> diff = new LinkedHashMap<>();
-        Map<Path, byte[]> removed = new LinkedHashMap<>(expected);
+    private static final Path ROOT = Path.of("");
+
+    public static ChecksumDiff diff(Map<Path, byte[]> expected, Map<Path, byte[]> actual) {
+        if (expected instanceof ChecksumTree left && actual instanceof ChecksumTree right) {
+            if (Arrays.equals(left.digest(ROOT), right.digest(ROOT))) {
+                return new ChecksumDiff(Collections.unmodifiableSet(actual.keySet()), RETAINED, Map.of(), 0);
+            } else if (actual instanceof ChecksumTable table) {
+                return diff(left, table);
+            }
+        }
+        Map<Path, ChecksumStatus> changes = new LinkedHashMap<>();
+        int matched = 0, removed = 0;
         for (Map.Entry<Path, byte[]> entry : actual.entrySet()) {
-            byte[] other = removed.remove(entry.getKey());
+            byte[] other = expected.get(entry.getKey());
             if (other == null) {
-                diff.put(entry.getKey(), ADDED);
-            } else if (Arrays.equals(other, entry.getValue())) {
-                diff.put(entry.getKey(), RETAINED);
+                changes.put(entry.getKey(), ADDED);
             } else {
-                diff.put(entry.getKey(), ALTERED);
+                if (!Arrays.equals(other, entry.getValue())) {
+                    changes.put(entry.getKey(), ALTERED);
+                }
+                matched++;
+            }
+        }
+        if (matched < expected.size()) {
+            for (Path path : expected.keySet()) {
+                if (!actual.containsKey(path)) {
+                    changes.put(path, REMOVED);
+                    removed++;
+                }
+            }
+        }
+        return new ChecksumDiff(Collections.unmodifiableSet(actual.keySet()), RETAINED, changes, removed);
+    }
+
+    private static ChecksumDiff diff(ChecksumTree expected, ChecksumTable actual) {
+        Map<Path, ChecksumStatus> changes = new LinkedHashMap<>();
+        int folder = skip(actual, -1, expected);
+        while (folder < actual.folders()) {
+            for (int index = actual.start(folder); index < actual.end(folder); index++) {
+                Path path = actual.path(index);
+                ChecksumStatus status = status(expected, actual, index, path);
+                if (status != RETAINED) {
+                    changes.put(path, status);
+                }
+            }
+            folder = skip(actual, folder, expected);
+        }
+        int removed = expected instanceof ChecksumTable table
+                ? removed(table, actual, changes)
+                : removed((ChecksumManifest) expected, actual, changes);
+        return new ChecksumDiff(Collections.unmodifiableSet(actual.keySet()), RETAINED, changes, removed);
+    }
+
+    private static ChecksumStatus status(ChecksumTree expected, ChecksumTable actual, int index, Path path) {
+        if (expected instanceof ChecksumTable table) {
+            int position = table.indexOf(path);
+            return position == -1 ? ADDED : actual.matches(index, table, position) ? RETAINED : ALTERED;
+        }
+        ChecksumManifest manifest = (ChecksumManifest) expected;
+        int position = manifest.indexOf(path);
+        return position == -1 ? ADDED : manifest.matches(position, actual.checksum(index)) ? RETAINED : ALTERED;
+    }
+
+    private static int removed(ChecksumTable expected, ChecksumTable actual, Map<Path, ChecksumStatus> changes) {
+        int removed = 0, folder = skip(expected, -1, actual);
+        while (folder < expected.folders()) {
+            for (int index = expected.start(folder); index < expected.end(folder); index++) {
+                Path path = expected.path(index);
+                if (actual.indexOf(path) == -1) {
+                    changes.put(path, REMOVED);
+                    removed++;
+                }
+            }
+            folder = skip(expected, folder, actual);
+        }
+        return removed;
+    }
+
+    private static int removed(ChecksumManifest expected, ChecksumTable actual, Map<Path, ChecksumStatus> changes) {
+        int removed = 0, index = 0;
+        Path checked = null;
+        while (index < expected.size()) {
+            Path path = expected.path(index), parent = path.getParent();
+            if (parent != null && !parent.equals(checked)) {
+                if (Arrays.equals(expected.digest(parent), actual.digest(parent))) {
+                    index = expected.end(parent);
+                    continue;
+                }
+                checked = parent;
+            }
+            if (actual.indexOf(path) == -1) {
+                changes.put(path, REMOVED);
+                removed++;
             }
+            index++;
         }
-        for (Path path : removed.keySet()) {
-            diff.put(path, REMOVED);
+        return removed;
+    }
+
+    private static int skip(ChecksumTable table, int folder, ChecksumTree other) {
+        int next = folder + 1;
+        while (next < table.folders()) {
+            Path current = table.folder(next);
+            if (!Arrays.equals(table.digest(current), other.digest(current))) {
+                break;
+            }
+            do {
+                next++;
+            } while (next < table.folders() && !current.equals(ROOT) && table.folder(next).startsWith(current));
         }
-        return diff;
+        return next;
     }
 
-    public static Map<Path, ChecksumStatus> added(Set<Path> paths) {
-        Map<Path, ChecksumStatus> diff = new LinkedHashMap<>();
-        paths.forEach(path -> diff.put(path, ADDED));
-        return diff;
+    public static ChecksumDiff added(Set<Path> paths) {
+        return new ChecksumDiff(Collections.unmodifiableSet(paths), ADDED, Map.of(), 0);
     }
 }
@@ -0,0 +1,206 @@
+package build.buildbuddy;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+public class ChecksumTable extends AbstractMap<Path, byte[]> implements ChecksumTree {
+
+    private static final Path ROOT = Path.of("");
+    private static final ChecksumTable EMPTY = new ChecksumTable(new Path[0],
+            new int[]{0},
+            new byte[0],
+            new int[]{0},
+            new byte[0],
+            0);
+
+    private final Path[] folders;
+    private final int[] ranges;
+    private final byte[] names;
+    private final int[] offsets;
+    private final byte[] digests;
+    private final int width;
+
+    private volatile SortedMap<Path, byte[]> tree;
+
+    private ChecksumTable(Path[] folders, int[] ranges, byte[] names, int[] offsets, byte[] digests, int width) {
+        this.folders = folders;
+        this.ranges = ranges;
+        this.names = names;
+        this.offsets = offsets;
+        this.digests = digests;
+        this.width = width;
+    }
+
+    public static ChecksumTable of(Map<Path, byte[]> checksums) {
+        if (checksums instanceof ChecksumTable table) {
+            return table;
+        } else if (checksums.isEmpty()) {
+            return EMPTY;
+        }
+        Map<Path, List<Map.Entry<byte[], byte[]>>> grouped = new TreeMap<>();
+        int width = -1, length = 0;
+        for (Map.Entry<Path, byte[]> entry : checksums.entrySet()) {
+            if (width == -1) {
+                width = entry.getValue().length;
+            } else if (width != entry.getValue().length) {
+                throw new IllegalArgumentException("Checksums of different length: " + entry.getKey());
+            }
+            Path parent = entry.getKey().getParent();
+            byte[] name = Objects.toString(entry.getKey().getFileName(), "").getBytes(StandardCharsets.UTF_8);
+            grouped.computeIfAbsent(parent == null ? ROOT : parent, _ -> new ArrayList<>())
+                    .add(Map.entry(name, entry.getValue()));
+            length += name.length;
+        }
+        Path[] folders = new Path[grouped.size()];
+        int[] ranges = new int[grouped.size() + 1], offsets = new int[checksums.size() + 1];
+        byte[] names = new byte[length], digests = new byte[checksums.size() * width];
+        int folder = 0, index = 0, offset = 0;
+        for (Map.Entry<Path, List<Map.Entry<byte[], byte[]>>> group : grouped.entrySet()) {
+            folders[folder] = group.getKey();
+            ranges[folder++] = index;
+            group.getValue().sort((left, right) -> Arrays.compareUnsigned(left.getKey(), right.getKey()));
+            for (Map.Entry<byte[], byte[]> entry : group.getValue()) {
+                offsets[index] = offset;
+                System.arraycopy(entry.getKey(), 0, names, offset, entry.getKey().length);
+                System.arraycopy(entry.getValue(), 0, digests, index++ * width, width);
+                offset += entry.getKey().length;
+            }
+        }
+        ranges[folder] = index;
+        offsets[index] = offset;
+        return new ChecksumTable(folders, ranges, names, offsets, digests, width);
+    }
+
+    public int indexOf(Path path) {
+        Path parent = path.getParent();
+        int folder = Arrays.binarySearch(folders, parent == null ? ROOT : parent);
+        if (folder < 0) {
+            return -1;
+        }
+        byte[] key = Objects.toString(path.getFileName(), "").getBytes(StandardCharsets.UTF_8);
+        int low = ranges[folder], high = ranges[folder + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1, comparison = Arrays.compareUnsigned(names,
+                    offsets[middle],
+                    offsets[middle + 1],
+                    key,
+                    0,
+                    key.length);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    public Path path(int index) {
+        int folder = Arrays.binarySearch(ranges, 0, folders.length, index);
+        return folders[folder < 0 ? -folder - 2 : folder].resolve(name(index));
+    }
+
+    public byte[] checksum(int index) {
+        return Arrays.copyOfRange(digests, index * width, (index + 1) * width);
+    }
+
+    @Override
+    public byte[] digest(Path folder) {
+        byte[] digest = tree().get(folder);
+        return digest == null ? null : digest.clone();
+    }
+
+    SortedMap<Path, byte[]> tree() {
+        SortedMap<Path, byte[]> tree = this.tree;
+        if (tree == null) {
+            tree = this.tree = Collections.unmodifiableSortedMap(ChecksumTree.digests(this));
+        }
+        return tree;
+    }
+
+    int folders() {
+        return folders.length;
+    }
+
+    Path folder(int folder) {
+        return folders[folder];
+    }
+
+    int start(int folder) {
+        return ranges[folder];
+    }
+
+    int end(int folder) {
+        return ranges[folder + 1];
+    }
+
+    boolean matches(int index, ChecksumTable other, int position) {
+        return width == other.width && Arrays.equals(digests,
+                index * width,
+                (index + 1) * width,
+                other.digests,
+                position * width,
+                (position + 1) * width);
+    }
+
+    @Override
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Path path && indexOf(path) != -1;
+    }
+
+    @Override
+    public byte[] get(Object key) {
+        if (key instanceof Path path) {
+            int index = indexOf(path);
+            return index == -1 ? null : checksum(index);
+        }
+        return null;
+    }
+
+    @Override
+    public Set<Entry<Path, byte[]>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Path, byte[]>> iterator() {
+                return new Iterator<>() {
+
+                    private int folder, index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < ChecksumTable.this.size();
+                    }
+
+                    @Override
+                    public Entry<Path, byte[]> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        while (ranges[folder + 1] == index) {
+                            folder++;
+                        }
+                        int current = index++;
+                        return new SimpleImmutableEntry<>(folders[folder].resolve(name(current)), checksum(current));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ChecksumTable.this.size();
+            }
+        };
+    }
+
+    private String name(int index) {
+        return new String(names, offsets[index], offsets[index + 1] - offsets[index], StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,62 @@
+package build.buildbuddy;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+@FunctionalInterface
+public interface ChecksumTree {
+
+    byte[] digest(Path folder);
+
+    static SortedMap<Path, byte[]> digests(Map<Path, byte[]> checksums) {
+        Path root = Path.of("");
+        Map<Path, List<Map.Entry<byte[], byte[]>>> children = new HashMap<>();
+        children.put(root, new ArrayList<>());
+        for (Map.Entry<Path, byte[]> entry : checksums.entrySet()) {
+            Path parent = entry.getKey().getParent();
+            children.computeIfAbsent(parent == null ? root : parent, _ -> new ArrayList<>())
+                    .add(Map.entry(toKey(entry.getKey(), false), entry.getValue()));
+            while (parent != null && children.putIfAbsent(parent.getParent() == null
+                    ? root
+                    : parent.getParent(), new ArrayList<>()) == null) {
+                parent = parent.getParent();
+            }
+        }
+        List<Path> folders = new ArrayList<>(children.keySet());
+        folders.sort(Comparator.comparingInt((Path folder) -> folder.equals(root) ? 0 : folder.getNameCount())
+                .reversed());
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        SortedMap<Path, byte[]> digests = new TreeMap<>();
+        for (Path folder : folders) {
+            List<Map.Entry<byte[], byte[]>> entries = children.get(folder);
+            entries.sort((left, right) -> Arrays.compareUnsigned(left.getKey(), right.getKey()));
+            for (Map.Entry<byte[], byte[]> entry : entries) {
+                digest.update(entry.getKey());
+                digest.update((byte) entry.getValue().length);
+                digest.update(entry.getValue());
+            }
+            byte[] value = digest.digest();
+            digests.put(folder, value);
+            if (!folder.equals(root)) {
+                Path parent = folder.getParent();
+                children.get(parent == null ? root : parent).add(Map.entry(toKey(folder, true), value));
+            }
+        }
+        return digests;
+    }
+
+    private static byte[] toKey(Path path, boolean folder) {
+        byte[] name = Objects.toString(path.getFileName(), "").getBytes(StandardCharsets.UTF_8);
+        byte[] key = Arrays.copyOf(name, name.length + 2);
+        key[name.length + 1] = (byte) (folder ? 1 : 0);
+        return key;
+    }
+}
@@ -0,0 +1,92 @@
+package build.buildbuddy;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ChromeTrace {
+
+    private final long origin = System.nanoTime();
+    private final Queue<String> events = new ConcurrentLinkedQueue<>();
+    private final Map<Long, String> threads = new ConcurrentHashMap<>();
+    private final Map<String, Long> identifiers = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public BuildTrace of(String identity) {
+        long identifier = identifiers.computeIfAbsent(identity, _ -> sequence.incrementAndGet());
+        return phase -> {
+            Thread thread = Thread.currentThread();
+            long started = System.nanoTime();
+            threads.computeIfAbsent(thread.threadId(), _ -> thread.isVirtual()
+                    ? "virtual-" + thread.threadId()
+                    : thread.getName());
+            return () -> {
+                long ended = System.nanoTime();
+                if (Thread.currentThread() == thread) {
+                    events.add("{\"name\":\"" + escape(identity + " " + phase) + "\""
+                            + ",\"cat\":\"" + escape(phase) + "\""
+                            + ",\"ph\":\"X\""
+                            + ",\"ts\":" + toMicros(started)
+                            + ",\"dur\":" + (toMicros(ended) - toMicros(started))
+                            + ",\"pid\":1,\"tid\":" + thread.threadId()
+                            + ",\"args\":{\"step\":\"" + escape(identity) + "\"}}");
+                } else {
+                    String common = "\"name\":\"" + escape(phase) + "\""
+                            + ",\"cat\":\"" + escape(identity) + "\""
+                            + ",\"id\":" + identifier
+                            + ",\"pid\":1,\"tid\":" + thread.threadId();
+                    events.add("{" + common + ",\"ph\":\"b\",\"ts\":" + toMicros(started) + "}");
+                    events.add("{" + common + ",\"ph\":\"e\",\"ts\":" + toMicros(ended) + "}");
+                }
+            };
+        };
+    }
+
+    public void write(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            writer.write("{\"traceEvents\":[\n");
+            writer.write("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"args\":{\"name\":\"build\"}}");
+            for (Map.Entry<Long, String> entry : threads.entrySet()) {
+                writer.write(",\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + entry.getKey()
+                        + ",\"args\":{\"name\":\"" + escape(entry.getValue()) + "\"}}");
+            }
+            for (String event : events) {
+                writer.write(",\n");
+                writer.write(event);
+            }
+            writer.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+        }
+    }
+
+    private long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos - origin);
+    }
+
+    private static String escape(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (char character : value.toCharArray()) {
+            switch (character) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (character < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        builder.append(character);
+                    }
+                }
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package build.buildbuddy;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class DeferredDeletion {
+
+    private final Path folder;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    DeferredDeletion(Path folder) {
+        this.folder = folder;
+    }
+
+    void discard(Path path) throws IOException {
+        Files.move(path,
+                Files.createDirectories(folder).resolve(UUID.randomUUID().toString()),
+                StandardCopyOption.ATOMIC_MOVE);
+        purge();
+    }
+
+    void purge() {
+        if (Files.isDirectory(folder) && running.compareAndSet(false, true)) {
+            Thread.ofPlatform()
+                    .name("build-deletion")
+                    .daemon()
+                    .priority(Thread.MIN_PRIORITY)
+                    .start(this::run);
+        }
+    }
+
+    boolean isEmpty() throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return true;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            return !stream.iterator().hasNext();
+        }
+    }
+
+    private void run() {
+        Set<Path> failed = new HashSet<>();
+        do {
+            try {
+                for (Path path : list()) {
+                    if (failed.contains(path)) {
+                        continue;
+                    }
+                    try {
+                        if (Files.isDirectory(path)) {
+                            Files.delete(Files.walkFileTree(path, new RecursiveFolderDeletion(path)));
+                        } else {
+                            Files.deleteIfExists(path);
+                        }
+                    } catch (IOException _) {
+                        failed.add(path);
+                    }
+                }
+            } catch (IOException _) {
+                running.set(false);
+                return;
+            }
+            running.set(false);
+            try {
+                if (failed.containsAll(list())) {
+                    return;
+                }
+            } catch (IOException _) {
+                return;
+            }
+        } while (running.compareAndSet(false, true));
+    }
+
+    private List<Path> list() throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return List.of();
+        }
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            stream.forEach(paths::add);
+        }
+        return paths;
+    }
+}
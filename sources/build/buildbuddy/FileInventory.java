@@ -0,0 +1,75 @@
+package build.buildbuddy;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Supplier;
+
+public class FileInventory {
+
+    private final Supplier<? extends Collection<Path>> files;
+
+    private volatile String[] paths;
+
+    FileInventory(Supplier<? extends Collection<Path>> files) {
+        this.files = files;
+    }
+
+    public static FileInventory of(Collection<Path> files) {
+        return new FileInventory(() -> files);
+    }
+
+    private String[] paths() {
+        String[] paths = this.paths;
+        if (paths == null) {
+            Collection<Path> files = this.files.get();
+            paths = new String[files.size()];
+            int index = 0;
+            for (Path file : files) {
+                paths[index++] = toKey(file);
+            }
+            Arrays.sort(paths);
+            this.paths = paths;
+        }
+        return paths;
+    }
+
+    private static String toKey(Path file) {
+        StringJoiner key = new StringJoiner("/");
+        file.forEach(element -> key.add(element.toString()));
+        return key.toString();
+    }
+
+    public boolean contains(Path file) {
+        return Arrays.binarySearch(paths(), toKey(file)) >= 0;
+    }
+
+    public List<Path> files(String prefix) {
+        return files(prefix, "");
+    }
+
+    public List<Path> files(String prefix, String extension) {
+        String[] paths = paths();
+        int index = Arrays.binarySearch(paths, prefix);
+        List<Path> files = new ArrayList<>();
+        for (index = index < 0 ? -index - 1 : index; index < paths.length && paths[index].startsWith(prefix); index++) {
+            if (paths[index].endsWith(extension)) {
+                files.add(Path.of(paths[index]));
+            }
+        }
+        return files;
+    }
+
+    public int size() {
+        return paths().length;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return this == object || object instanceof FileInventory inventory && Arrays.equals(paths(), inventory.paths());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(paths());
+    }
+}
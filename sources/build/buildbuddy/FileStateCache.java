@@ -0,0 +1,138 @@
+package build.buildbuddy;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class FileStateCache implements HashFunction {
+
+    private static final long MARGIN = TimeUnit.SECONDS.toNanos(2);
+
+    private final Path file;
+    private final HashFunction hash;
+
+    private volatile Map<String, FileState> states;
+
+    public FileStateCache(Path file, HashFunction hash) {
+        this.file = file;
+        this.hash = hash;
+    }
+
+    @Override
+    public byte[] hash(Path file) throws IOException {
+        Map<String, FileState> states = states();
+        String key = file.toAbsolutePath().normalize().toString();
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attributes.size(), modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        String identity = Objects.toString(attributes.fileKey(), "");
+        FileState state = states.get(key);
+        if (state != null
+                && state.size() == size
+                && state.modified() == modified
+                && state.identity().equals(identity)
+                && modified < state.recorded() - MARGIN) {
+            return state.hash().clone();
+        }
+        long recorded = System.currentTimeMillis() * 1_000_000;
+        byte[] checksum = hash.hash(file);
+        states.put(key, new FileState(size, modified, identity, recorded, checksum.clone()));
+        return checksum;
+    }
+
+    void register(Path file, byte[] checksum) throws IOException {
+        Map<String, FileState> states = states();
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                recorded = System.currentTimeMillis() * 1_000_000;
+        if (modified >= recorded - MARGIN) {
+            return;
+        }
+        states.put(file.toAbsolutePath().normalize().toString(), new FileState(
+                attributes.size(),
+                modified,
+                Objects.toString(attributes.fileKey(), ""),
+                recorded,
+                checksum.clone()));
+    }
+
+    void relocate(Path source, Path target) throws IOException {
+        Map<String, FileState> states = states();
+        FileState state = states.remove(source.toAbsolutePath().normalize().toString());
+        if (state != null) {
+            states.put(target.toAbsolutePath().normalize().toString(), state);
+        }
+    }
+
+    public void persist() throws IOException {
+        Map<String, FileState> states = this.states;
+        if (states == null) {
+            return;
+        }
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporary)))) {
+            outputStream.writeUTF(hash.name());
+            for (Map.Entry<String, FileState> entry : states.entrySet()) {
+                if (!Files.exists(Path.of(entry.getKey()))) {
+                    continue;
+                }
+                outputStream.writeBoolean(true);
+                outputStream.writeUTF(entry.getKey());
+                outputStream.writeLong(entry.getValue().size());
+                outputStream.writeLong(entry.getValue().modified());
+                outputStream.writeUTF(entry.getValue().identity());
+                outputStream.writeLong(entry.getValue().recorded());
+                outputStream.writeShort(entry.getValue().hash().length);
+                outputStream.write(entry.getValue().hash());
+            }
+            outputStream.writeBoolean(false);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Map<String, FileState> states() throws IOException {
+        Map<String, FileState> states = this.states;
+        if (states == null) {
+            synchronized (this) {
+                states = this.states;
+                if (states == null) {
+                    this.states = states = load();
+                }
+            }
+        }
+        return states;
+    }
+
+    private Map<String, FileState> load() throws IOException {
+        Map<String, FileState> states = new ConcurrentHashMap<>();
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (!inputStream.readUTF().equals(hash.name())) {
+                return states;
+            }
+            while (inputStream.readBoolean()) {
+                String key = inputStream.readUTF();
+                long size = inputStream.readLong(), modified = inputStream.readLong();
+                String identity = inputStream.readUTF();
+                long recorded = inputStream.readLong();
+                byte[] hash = new byte[inputStream.readUnsignedShort()];
+                inputStream.readFully(hash);
+                states.put(key, new FileState(size, modified, identity, recorded, hash));
+            }
+        } catch (NoSuchFileException _) {
+            return states;
+        } catch (EOFException | UTFDataFormatException _) {
+            return new ConcurrentHashMap<>();
+        }
+        return states;
+    }
+
+    private record FileState(long size, long modified, String identity, long recorded, byte[] hash) {
+    }
+}
@@ -1,30 +1,76 @@
 package build.buildbuddy;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
 
 public class HashDigestFunction implements HashFunction {
 
+    private static final int SMALL = 1 << 16;
+    private static final long WINDOW = 1L << 26;
+    private static final int POOL = Runtime.getRuntime().availableProcessors();
+
     private final String algorithm;
 
+    private final Queue<MessageDigest> digests = new ArrayBlockingQueue<>(POOL);
+    private final Queue<ByteBuffer> buffers = new ArrayBlockingQueue<>(POOL);
+
     public HashDigestFunction(String algorithm) {
         this.algorithm = algorithm;
     }
 
+    public String algorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public String name() {
+        return HashFunction.super.name() + "/" + algorithm;
+    }
+
     @Override
     public byte[] hash(Path file) throws IOException {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance(algorithm);
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException(e);
+        MessageDigest digest = digests.poll();
+        if (digest == null) {
+            try {
+                digest = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
         }
         try (FileChannel channel = FileChannel.open(file)) {
-            digest.update(channel.map(FileChannel.MapMode.READ_ONLY, channel.position(), channel.size()));
+            long size = channel.size();
+            if (size <= SMALL) {
+                ByteBuffer buffer = buffers.poll();
+                if (buffer == null) {
+                    buffer = ByteBuffer.allocateDirect(SMALL);
+                }
+                try {
+                    long position = 0;
+                    int read;
+                    while ((read = channel.read(buffer.clear(), position)) != -1) {
+                        position += read;
+                        digest.update(buffer.flip());
+                    }
+                } finally {
+                    buffers.offer(buffer);
+                }
+            } else {
+                for (long position = 0; position < size; position += WINDOW) {
+                    digest.update(channel.map(FileChannel.MapMode.READ_ONLY,
+                            position,
+                            Math.min(WINDOW, size - position)));
+                }
+            }
+            return digest.digest();
+        } finally {
+            digest.reset();
+            digests.offer(digest);
         }
-        return digest.digest();
     }
 }
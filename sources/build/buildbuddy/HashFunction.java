@@ -7,14 +7,27 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @FunctionalInterface
 public interface HashFunction {
 
     byte[] hash(Path file) throws IOException;
 
+    default String name() {
+        return getClass().getName();
+    }
+
     static Map<Path, byte[]> read(Path file) throws IOException {
+        Optional<ChecksumManifest> manifest = ChecksumManifest.of(file);
+        if (manifest.isPresent()) {
+            return manifest.get();
+        }
         Map<Path, byte[]> checksums = new LinkedHashMap<>();
         try (BufferedReader reader = Files.newBufferedReader(file)) {
             Iterator<String> it = reader.lines().iterator();
@@ -22,7 +35,7 @@ public interface HashFunction {
                 checksums.put(Paths.get(it.next()), HexFormat.of().parseHex(it.next()));
             }
         }
-        return checksums;
+        return ChecksumTable.of(checksums);
     }
 
     static Map<Path, byte[]> read(Path folder, HashFunction hash) throws IOException {
@@ -38,11 +51,20 @@ public interface HashFunction {
                 checksums.put(folder.relativize(current), hash.hash(current));
             }
         } while (!queue.isEmpty());
-        return checksums;
+        return ChecksumTable.of(checksums);
+    }
+
+    static CompletionStage<Map<Path, byte[]>> read(Path folder, HashFunction hash, Executor executor) {
+        Map<Path, byte[]> checksums = new ConcurrentHashMap<>();
+        return new HashTraversal(folder, executor, (path, file) -> {
+            checksums.put(path, hash.hash(file));
+            return true;
+        }).traverse().thenApply(_ -> ChecksumTable.of(checksums));
     }
 
     static void write(Path file, Map<Path, byte[]> checksums) throws IOException {
-        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary)) {
             for (Map.Entry<Path, byte[]> entry : checksums.entrySet()) {
                 writer.append(entry.getKey().toString());
                 writer.newLine();
@@ -50,10 +72,11 @@ public interface HashFunction {
                 writer.newLine();
             }
         }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     static boolean areConsistent(Path folder, Map<Path, byte[]> checksums, HashFunction hash) throws IOException {
-        Map<Path, byte[]> remaining = new HashMap<>(checksums);
+        int matched = 0;
         Queue<Path> queue = new ArrayDeque<>(List.of(folder));
         do {
             Path current = queue.remove();
@@ -62,12 +85,28 @@ public interface HashFunction {
                     stream.forEach(queue::add);
                 }
             } else {
-                byte[] checksum = remaining.remove(folder.relativize(current));
+                byte[] checksum = checksums.get(folder.relativize(current));
                 if (checksum == null || !Arrays.equals(checksum, hash.hash(current))) {
                     return false;
                 }
+                matched++;
             }
         } while (!queue.isEmpty());
-        return remaining.isEmpty();
+        return matched == checksums.size();
+    }
+
+    static CompletionStage<Boolean> areConsistent(Path folder,
+                                                  Map<Path, byte[]> checksums,
+                                                  HashFunction hash,
+                                                  Executor executor) {
+        AtomicInteger matched = new AtomicInteger();
+        return new HashTraversal(folder, executor, (path, file) -> {
+            byte[] checksum = checksums.get(path);
+            if (checksum != null && Arrays.equals(checksum, hash.hash(file))) {
+                matched.incrementAndGet();
+                return true;
+            }
+            return false;
+        }).traverse().thenApply(consistent -> consistent && matched.get() == checksums.size());
     }
 }
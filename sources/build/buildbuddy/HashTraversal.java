@@ -0,0 +1,68 @@
+package build.buildbuddy;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+class HashTraversal {
+
+    private final Path folder;
+    private final Executor executor;
+    private final Visitor visitor;
+
+    private volatile boolean aborted;
+
+    HashTraversal(Path folder, Executor executor, Visitor visitor) {
+        this.folder = folder;
+        this.executor = executor;
+        this.visitor = visitor;
+    }
+
+    CompletableFuture<Boolean> traverse() {
+        return traverse(folder).thenApply(_ -> !aborted);
+    }
+
+    private CompletableFuture<Void> traverse(Path current) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                if (aborted) {
+                    future.complete(null);
+                } else if (Files.isDirectory(current)) {
+                    List<Path> children = new ArrayList<>();
+                    try (DirectoryStream<Path> stream = Files.newDirectoryStream(current)) {
+                        stream.forEach(children::add);
+                    }
+                    CompletableFuture.allOf(children.stream()
+                            .map(this::traverse)
+                            .toArray(CompletableFuture[]::new)).whenComplete((_, throwable) -> {
+                        if (throwable == null) {
+                            future.complete(null);
+                        } else {
+                            future.completeExceptionally(throwable);
+                        }
+                    });
+                } else {
+                    if (!visitor.visit(folder.relativize(current), current)) {
+                        aborted = true;
+                    }
+                    future.complete(null);
+                }
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    @FunctionalInterface
+    interface Visitor {
+
+        boolean visit(Path path, Path file) throws IOException;
+    }
+}
@@ -0,0 +1,132 @@
+package build.buildbuddy;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+public class HttpBuildCache implements BuildCache {
+
+    static final String CHECKSUMS = "checksums", OUTPUT = "output/";
+
+    private final URI uri;
+    private final int timeout;
+
+    public HttpBuildCache(URI uri) {
+        this(uri, Duration.ofSeconds(30));
+    }
+
+    public HttpBuildCache(URI uri, Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Timeout must be positive: " + timeout);
+        }
+        this.uri = uri.toString().endsWith("/") ? uri : URI.create(uri + "/");
+        this.timeout = (int) Math.min(timeout.toMillis(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Optional<Map<Path, byte[]>> restore(String key, Path folder) throws IOException {
+        HttpURLConnection connection = connect(key);
+        try {
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                return Optional.empty();
+            } else if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response for " + key + ": " + connection.getResponseCode());
+            }
+            Map<Path, byte[]> checksums = null;
+            try (ZipInputStream inputStream = new ZipInputStream(connection.getInputStream())) {
+                ZipEntry entry;
+                while ((entry = inputStream.getNextEntry()) != null) {
+                    if (entry.getName().equals(CHECKSUMS)) {
+                        checksums = new LinkedHashMap<>();
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                                inputStream,
+                                StandardCharsets.UTF_8));
+                        String path;
+                        while ((path = reader.readLine()) != null) {
+                            checksums.put(Path.of(path), HexFormat.of().parseHex(reader.readLine()));
+                        }
+                    } else if (entry.getName().startsWith(OUTPUT) && !entry.isDirectory()) {
+                        Path file = folder.resolve(entry.getName().substring(OUTPUT.length())).normalize();
+                        if (!file.startsWith(folder)) {
+                            throw new IOException("Illegal entry for " + key + ": " + entry.getName());
+                        }
+                        Files.createDirectories(file.getParent());
+                        Files.copy(inputStream, file);
+                    }
+                }
+            }
+            if (checksums == null) {
+                throw new IOException("No checksums for " + key);
+            }
+            return Optional.of(checksums);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public void store(String key, Path folder, Map<Path, byte[]> checksums) throws IOException {
+        HttpURLConnection connection = connect(key);
+        connection.setRequestMethod("HEAD");
+        try {
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                return;
+            }
+        } finally {
+            connection.disconnect();
+        }
+        connection = connect(key);
+        connection.setRequestMethod("PUT");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(0);
+        try {
+            try (ZipOutputStream outputStream = new ZipOutputStream(connection.getOutputStream())) {
+                outputStream.putNextEntry(new ZipEntry(CHECKSUMS));
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                for (Map.Entry<Path, byte[]> entry : checksums.entrySet()) {
+                    writer.append(entry.getKey().toString()).append('\n');
+                    writer.append(HexFormat.of().formatHex(entry.getValue())).append('\n');
+                }
+                writer.flush();
+                outputStream.closeEntry();
+                Files.walkFileTree(folder, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        StringJoiner name = new StringJoiner("/", OUTPUT, "");
+                        folder.relativize(file).forEach(element -> name.add(element.toString()));
+                        outputStream.putNextEntry(new ZipEntry(name.toString()));
+                        Files.copy(file, outputStream);
+                        outputStream.closeEntry();
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK
+                    && code != HttpURLConnection.HTTP_CREATED
+                    && code != HttpURLConnection.HTTP_NO_CONTENT) {
+                throw new IOException("Unexpected response for " + key + ": " + code);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection connect(String key) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) uri.resolve(key).toURL().openConnection();
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        return connection;
+    }
+}
@@ -0,0 +1,98 @@
+package build.buildbuddy;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+public class HttpBuildCacheServer implements Closeable {
+
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{16,128}");
+
+    private final Path folder;
+    private final HttpServer server;
+    private final ExecutorService executorService;
+
+    public HttpBuildCacheServer(Path folder, int port) throws IOException {
+        this(folder, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public HttpBuildCacheServer(Path folder, InetSocketAddress address) throws IOException {
+        this.folder = Files.createDirectories(folder);
+        server = HttpServer.create(address, 0);
+        executorService = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executorService);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            throw new IllegalArgumentException("Expected arguments: <folder> <port> [<address>]");
+        }
+        HttpBuildCacheServer server = new HttpBuildCacheServer(Path.of(args[0]), new InetSocketAddress(
+                args.length == 3 ? InetAddress.getByName(args[2]) : InetAddress.getLoopbackAddress(),
+                Integer.parseInt(args[1])));
+        System.out.println("Serving build cache from " + args[0] + " on "
+                + server.server.getAddress().getHostString() + ":" + server.port());
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String key = exchange.getRequestURI().getPath().substring(1);
+            if (!KEY.matcher(key).matches()) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            Path entry = folder.resolve(key + ".zip");
+            switch (exchange.getRequestMethod()) {
+                case "HEAD" -> exchange.sendResponseHeaders(Files.exists(entry) ? 200 : 404, -1);
+                case "GET" -> {
+                    if (Files.exists(entry)) {
+                        exchange.sendResponseHeaders(200, Files.size(entry));
+                        try (OutputStream outputStream = exchange.getResponseBody()) {
+                            Files.copy(entry, outputStream);
+                        }
+                    } else {
+                        exchange.sendResponseHeaders(404, -1);
+                    }
+                }
+                case "PUT" -> {
+                    Path temporary = Files.createTempFile(folder, "." + key, ".zip");
+                    try (InputStream inputStream = exchange.getRequestBody()) {
+                        Files.copy(inputStream, temporary, StandardCopyOption.REPLACE_EXISTING);
+                        Files.move(temporary,
+                                entry,
+                                StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+                    } finally {
+                        Files.deleteIfExists(temporary);
+                    }
+                    exchange.sendResponseHeaders(201, -1);
+                }
+                default -> exchange.sendResponseHeaders(405, -1);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executorService.close();
+    }
+}
@@ -0,0 +1,87 @@
+package build.buildbuddy;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Optional;
+
+public class LocalBuildCache implements BuildCache {
+
+    private final Path folder;
+
+    public LocalBuildCache(Path folder) {
+        this.folder = folder;
+    }
+
+    @Override
+    public Optional<Map<Path, byte[]>> restore(String key, Path folder) throws IOException {
+        Path entry = this.folder.resolve(key);
+        if (!Files.exists(entry)) {
+            return Optional.empty();
+        }
+        Map<Path, byte[]> checksums = HashFunction.read(entry.resolve("checksums"));
+        Files.walkFileTree(entry.resolve("output"), new LinkingFileVisitor(entry.resolve("output"), folder, false));
+        return Optional.of(checksums);
+    }
+
+    @Override
+    public void store(String key, Path folder, Map<Path, byte[]> checksums) throws IOException {
+        Path entry = this.folder.resolve(key);
+        if (Files.exists(entry)) {
+            return;
+        }
+        Path temporary = Files.createTempDirectory(Files.createDirectories(this.folder), "." + key);
+        try {
+            Files.walkFileTree(folder, new LinkingFileVisitor(folder, temporary.resolve("output"), true));
+            HashFunction.write(temporary.resolve("checksums"), checksums);
+            Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException _) {
+            Files.delete(Files.walkFileTree(temporary, new RecursiveFolderDeletion(temporary)));
+        } catch (Throwable t) {
+            Files.delete(Files.walkFileTree(temporary, new RecursiveFolderDeletion(temporary)));
+            throw t;
+        }
+    }
+
+    private static class LinkingFileVisitor extends SimpleFileVisitor<Path> {
+
+        private final Path source, target;
+        private final boolean exclusive;
+
+        private LinkingFileVisitor(Path source, Path target, boolean exclusive) {
+            this.source = source;
+            this.target = target;
+            this.exclusive = exclusive;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            Path link = target.resolve(source.relativize(file).toString());
+            if (exclusive && isShared(file)) {
+                Files.copy(file, link);
+            } else {
+                try {
+                    Files.createLink(link, file);
+                } catch (IOException | UnsupportedOperationException _) {
+                    Files.copy(file, link);
+                }
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        private static boolean isShared(Path file) {
+            try {
+                return (Integer) Files.getAttribute(file, "unix:nlink") > 1;
+            } catch (IOException | UnsupportedOperationException | IllegalArgumentException _) {
+                return true;
+            }
+        }
+    }
+}
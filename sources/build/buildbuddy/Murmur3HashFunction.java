@@ -0,0 +1,79 @@
+package build.buildbuddy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+public class Murmur3HashFunction implements HashFunction {
+
+    private static final int CHUNK = 1 << 16;
+    private static final long C1 = 0x87c37b91114253d5L, C2 = 0x4cf5ad432745937fL;
+
+    @Override
+    public byte[] hash(Path file) throws IOException {
+        long h1 = 0, h2 = 0, length = 0;
+        try (FileChannel channel = FileChannel.open(file)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Math.clamp((channel.size() + 15) & ~15L, 16, CHUNK))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            boolean exhausted = false;
+            while (!exhausted) {
+                buffer.clear();
+                while (buffer.hasRemaining() && !exhausted) {
+                    exhausted = channel.read(buffer) == -1;
+                }
+                buffer.flip();
+                length += buffer.remaining();
+                while (buffer.remaining() >= 16) {
+                    h1 ^= mixK1(buffer.getLong());
+                    h1 = Long.rotateLeft(h1, 27) + h2;
+                    h1 = h1 * 5 + 0x52dce729;
+                    h2 ^= mixK2(buffer.getLong());
+                    h2 = Long.rotateLeft(h2, 31) + h1;
+                    h2 = h2 * 5 + 0x38495ab5;
+                }
+                int tail = buffer.remaining();
+                if (tail > 0) {
+                    long k1 = 0, k2 = 0;
+                    for (int index = tail - 1; index >= 8; index--) {
+                        k2 = k2 << 8 | buffer.get(buffer.position() + index) & 0xFF;
+                    }
+                    for (int index = Math.min(tail, 8) - 1; index >= 0; index--) {
+                        k1 = k1 << 8 | buffer.get(buffer.position() + index) & 0xFF;
+                    }
+                    if (tail > 8) {
+                        h2 ^= mixK2(k2);
+                    }
+                    h1 ^= mixK1(k1);
+                }
+            }
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN).putLong(h1).putLong(h2).array();
+    }
+
+    private static long mixK1(long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
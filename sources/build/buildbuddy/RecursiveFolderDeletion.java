@@ -0,0 +1,31 @@
+package build.buildbuddy;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+class RecursiveFolderDeletion extends SimpleFileVisitor<Path> {
+
+    private final Path root;
+
+    RecursiveFolderDeletion(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        if (!dir.equals(root)) {
+            Files.delete(dir);
+        }
+        return FileVisitResult.CONTINUE;
+    }
+}
@@ -0,0 +1,89 @@
+package build.buildbuddy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+class StepDurations {
+
+    private final Path file;
+
+    private volatile Map<String, Long> durations;
+
+    StepDurations(Path file) {
+        this.file = file;
+    }
+
+    void record(String identity, long nanos) {
+        durations().put(identity, Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanos)));
+    }
+
+    SequencedMap<String, Long> toPriorities(SequencedMap<String, ? extends Set<String>> dependencies) {
+        Map<String, Long> durations = durations();
+        Map<String, Set<String>> dependents = new HashMap<>();
+        dependencies.forEach((identity, values) -> values.forEach(dependency -> dependents.computeIfAbsent(
+                dependency,
+                _ -> new HashSet<>()).add(identity)));
+        SequencedMap<String, Long> priorities = new LinkedHashMap<>();
+        for (String identity : dependencies.sequencedKeySet().reversed()) {
+            long remaining = 0;
+            for (String dependent : dependents.getOrDefault(identity, Set.of())) {
+                remaining = Math.max(remaining, priorities.get(dependent));
+            }
+            priorities.putFirst(identity, durations.getOrDefault(identity, 1L) + remaining);
+        }
+        return priorities;
+    }
+
+    void persist() throws IOException {
+        Map<String, Long> durations = this.durations;
+        if (durations == null) {
+            return;
+        }
+        Properties properties = new SequencedProperties();
+        new TreeMap<>(durations).forEach((identity, duration) -> properties.setProperty(
+                identity,
+                Long.toString(duration)));
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary)) {
+            properties.store(writer, null);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Map<String, Long> durations() {
+        Map<String, Long> durations = this.durations;
+        if (durations == null) {
+            synchronized (this) {
+                durations = this.durations;
+                if (durations == null) {
+                    this.durations = durations = load();
+                }
+            }
+        }
+        return durations;
+    }
+
+    private Map<String, Long> load() {
+        Map<String, Long> durations = new ConcurrentHashMap<>();
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        } catch (IOException | IllegalArgumentException _) {
+            return durations;
+        }
+        for (String identity : properties.stringPropertyNames()) {
+            try {
+                durations.put(identity, Long.parseLong(properties.getProperty(identity)));
+            } catch (NumberFormatException _) {
+            }
+        }
+        return durations;
+    }
+}
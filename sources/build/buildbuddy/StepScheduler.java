@@ -0,0 +1,130 @@
+package build.buildbuddy;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+class StepScheduler {
+
+    private final Executor executor;
+    private final int parallelism;
+    private final Map<String, Long> capacities, available;
+
+    private final ThreadLocal<Queue<Runnable>> trampoline = new ThreadLocal<>();
+    private final NavigableSet<Task> queue = new TreeSet<>(Comparator
+            .comparingLong(Task::priority).reversed()
+            .thenComparingLong(Task::sequence));
+    private long sequence;
+    private int running;
+    private boolean started;
+
+    StepScheduler(Executor executor, int parallelism) {
+        this(executor, parallelism, Map.of());
+    }
+
+    StepScheduler(Executor executor, int parallelism, Map<String, Long> capacities) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.capacities = Map.copyOf(capacities);
+        available = new HashMap<>(capacities);
+    }
+
+    <T> CompletionStage<T> submit(long priority, Supplier<? extends CompletionStage<T>> supplier) {
+        return submit(priority, Map.of(), supplier);
+    }
+
+    <T> CompletionStage<T> submit(long priority,
+                                  Map<String, Long> resources,
+                                  Supplier<? extends CompletionStage<T>> supplier) {
+        Map<String, Long> claims = new HashMap<>();
+        resources.forEach((resource, amount) -> {
+            Long capacity = capacities.get(resource);
+            if (capacity != null && amount > 0) {
+                claims.put(resource, Math.min(amount, capacity));
+            }
+        });
+        CompletableFuture<T> future = new CompletableFuture<>();
+        synchronized (this) {
+            queue.add(new Task(priority, sequence++, claims, () -> {
+                CompletionStage<T> stage;
+                try {
+                    stage = supplier.get();
+                } catch (Throwable t) {
+                    stage = CompletableFuture.failedFuture(t);
+                }
+                stage.whenComplete((value, throwable) -> {
+                    if (throwable == null) {
+                        future.complete(value);
+                    } else {
+                        future.completeExceptionally(throwable);
+                    }
+                    synchronized (this) {
+                        running--;
+                        claims.forEach((resource, amount) -> available.merge(resource, amount, Long::sum));
+                    }
+                    dispatch();
+                });
+            }));
+        }
+        dispatch();
+        return future;
+    }
+
+    void start() {
+        synchronized (this) {
+            started = true;
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        List<Task> tasks = new ArrayList<>();
+        synchronized (this) {
+            Set<String> exhausted = new HashSet<>();
+            Iterator<Task> it = queue.iterator();
+            while (started && running < parallelism && it.hasNext()) {
+                Task task = it.next();
+                boolean admissible = true;
+                for (Map.Entry<String, Long> claim : task.claims().entrySet()) {
+                    if (exhausted.contains(claim.getKey()) || available.get(claim.getKey()) < claim.getValue()) {
+                        exhausted.add(claim.getKey());
+                        admissible = false;
+                    }
+                }
+                if (admissible) {
+                    task.claims().forEach((resource, amount) -> available.merge(resource, -amount, Long::sum));
+                    running++;
+                    it.remove();
+                    tasks.add(task);
+                }
+            }
+        }
+        if (tasks.isEmpty()) {
+            return;
+        }
+        Queue<Runnable> runnables = trampoline.get();
+        if (runnables != null) {
+            tasks.forEach(task -> runnables.add(task.runnable()));
+            return;
+        }
+        Queue<Runnable> pending = new ArrayDeque<>();
+        tasks.forEach(task -> pending.add(task.runnable()));
+        trampoline.set(pending);
+        try {
+            Runnable runnable;
+            while ((runnable = pending.poll()) != null) {
+                executor.execute(runnable);
+            }
+        } finally {
+            trampoline.remove();
+        }
+    }
+
+    private record Task(long priority, long sequence, Map<String, Long> claims, Runnable runnable) {
+    }
+}
@@ -205,7 +205,7 @@ public class MavenRepository implements Repository {
 
         @Override
         public void storeIfNotPresent(byte[] bytes) throws IOException {
-            Path temporary = Files.createTempFile(prefix, suffix);
+            Path temporary = Files.createTempFile(path.getParent(), "." + prefix, suffix);
             try (OutputStream outputStream = Files.newOutputStream(temporary)) {
                 outputStream.write(bytes);
             } catch (Throwable t) {
@@ -226,7 +226,7 @@ public class MavenRepository implements Repository {
             if (candidate.isEmpty()) {
                 return Optional.empty();
             }
-            Path temporary = Files.createTempFile(prefix, suffix);
+            Path temporary = Files.createTempFile(path.getParent(), "." + prefix, suffix);
             try (InputStream inputStream = candidate.get()) {
                 Files.copy(inputStream, temporary, StandardCopyOption.REPLACE_EXISTING);
             } catch (Throwable t) {
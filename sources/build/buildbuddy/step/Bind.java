@@ -56,6 +56,14 @@ public class Bind implements BuildStep {
                         Files.createDirectories(target.getParent());
                     }
                     Files.walkFileTree(source, new LinkingFileVisitor(source, target));
+                    Path prefix = entry.getKey().normalize();
+                    for (Map.Entry<Path, byte[]> checksum : argument.checksums().entrySet()) {
+                        if (prefix.toString().isEmpty() || checksum.getKey().startsWith(prefix)) {
+                            context.checksums().put(
+                                    entry.getValue().normalize().resolve(prefix.relativize(checksum.getKey())),
+                                    checksum.getValue());
+                        }
+                    }
                 }
             }
         }
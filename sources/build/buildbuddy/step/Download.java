@@ -34,6 +34,7 @@ public class Download implements DependencyTransformingBuildStep {
         List<CompletableFuture<?>> futures = new ArrayList<>();
         Properties properties = new SequencedProperties();
         Path libs = Files.createDirectory(context.next().resolve(ARTIFACTS));
+        String algorithm = context.hash() instanceof HashDigestFunction hash ? hash.algorithm() : null;
         for (Map.Entry<String, SequencedMap<String, String>> group : groups.entrySet()) {
             Repository repository = requireNonNull(
                     repositories.get(group.getKey()),
@@ -51,7 +52,16 @@ public class Download implements DependencyTransformingBuildStep {
                                 RepositoryItem source = repository.fetch(executor, entry.getKey()).orElseThrow(
                                         () -> new IllegalStateException("Unresolved: " + dependency));
                                 Path file = source.getFile().orElse(null);
-                                if (file == null) {
+                                if (file == null && algorithm != null) {
+                                    try (DigestInputStream inputStream = new DigestInputStream(
+                                            source.toInputStream(),
+                                            MessageDigest.getInstance(algorithm))) {
+                                        Files.copy(inputStream, libs.resolve(name));
+                                        context.checksums().put(
+                                                Path.of(ARTIFACTS + name),
+                                                inputStream.getMessageDigest().digest());
+                                    }
+                                } else if (file == null) {
                                     try (InputStream inputStream = source.toInputStream()) {
                                         Files.copy(inputStream, libs.resolve(name));
                                     }
@@ -68,17 +78,18 @@ public class Download implements DependencyTransformingBuildStep {
                         futures.add(future);
                     }
                 } else {
-                    int algorithm = entry.getValue().indexOf('/');
+                    int index = entry.getValue().indexOf('/');
                     MessageDigest digest;
                     try {
-                        digest = MessageDigest.getInstance(entry.getValue().substring(0, algorithm));
+                        digest = MessageDigest.getInstance(entry.getValue().substring(0, index));
                     } catch (NoSuchAlgorithmException e) {
                         throw new IllegalStateException(e);
                     }
-                    String checksum = entry.getValue().substring(algorithm + 1);
+                    String checksum = entry.getValue().substring(index + 1);
                     if (previous != null && Files.exists(previous)) {
                         if (validateFile(digest, previous, checksum)) {
                             Files.createLink(libs.resolve(name), previous);
+                            report(context, algorithm, digest, name, checksum);
                             continue;
                         } else {
                             digest.reset();
@@ -108,6 +119,7 @@ public class Download implements DependencyTransformingBuildStep {
                                     throw new IllegalStateException("Mismatched digest for " + dependency);
                                 }
                             }
+                            report(context, algorithm, digest, name, checksum);
                             future.complete(null);
                         } catch (Throwable t) {
                             future.completeExceptionally(new RuntimeException(
@@ -124,6 +136,16 @@ public class Download implements DependencyTransformingBuildStep {
                 .thenApply(_ -> properties);
     }
 
+    private static void report(BuildStepContext context,
+                               String algorithm,
+                               MessageDigest digest,
+                               String name,
+                               String checksum) {
+        if (digest.getAlgorithm().equalsIgnoreCase(algorithm)) {
+            context.checksums().put(Path.of(ARTIFACTS + name), HexFormat.of().parseHex(checksum));
+        }
+    }
+
     private static boolean validateFile(MessageDigest digest, Path file, String expected) throws IOException {
         try (FileChannel channel = FileChannel.open(file)) {
             digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
@@ -4,13 +4,10 @@ import build.buildbuddy.BuildStepArgument;
 import build.buildbuddy.BuildStepContext;
 
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.SequencedMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
@@ -22,17 +19,27 @@ import java.util.stream.Stream;
 public class JUnit4 extends Java {
 
     private final Predicate<String> isTest;
+    private final boolean conventional;
 
     public JUnit4() {
         List<Pattern> patterns = Stream.of(".*\\.Test[a-zA-Z0-9$]*", ".*\\..*Test", ".*\\..*Tests", ".*\\..*TestCase")
                 .map(Pattern::compile)
                 .toList();
         this.isTest = name -> patterns.stream().anyMatch(pattern -> pattern.matcher(name).matches());
+        conventional = true;
     }
 
     public JUnit4(String java, Predicate<String> isTest) {
         super(java);
         this.isTest = isTest;
+        conventional = false;
+    }
+
+    @Override
+    public Optional<String> configuration() {
+        return conventional
+                ? Optional.of(getClass().getName() + " " + java + (modular ? " modular" : ""))
+                : Optional.empty();
     }
 
     @Override
@@ -50,22 +57,12 @@ public class JUnit4 extends Java {
             commands.add("org.junit.runner.JUnitCore");
         }
         for (BuildStepArgument argument : arguments.values()) {
-            Path classes = argument.folder().resolve(Javac.CLASSES);
-            if (Files.exists(classes)) {
-                Files.walkFileTree(classes, new SimpleFileVisitor<>() {
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                        if (file.toString().endsWith(".class")) {
-                            String raw = classes.relativize(file).toString();
-                            String className = raw.substring(0, raw.length() - 6).replace('/', '.');
-                            if (isTest.test(className)) {
-                                commands.add(className);
-                            }
-
-                        }
-                        return FileVisitResult.CONTINUE;
-                    }
-                });
+            for (Path file : argument.inventory().files(Javac.CLASSES, ".class")) {
+                String raw = Path.of(Javac.CLASSES).relativize(file).toString();
+                String className = raw.substring(0, raw.length() - 6).replace('/', '.');
+                if (isTest.test(className)) {
+                    commands.add(className);
+                }
             }
         }
         return CompletableFuture.completedFuture(commands);
@@ -8,6 +8,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.SequencedMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
@@ -25,6 +26,11 @@ public class Jar implements ProcessBuildStep {
         this.jar = jar;
     }
 
+    @Override
+    public Optional<String> configuration() {
+        return Optional.of(getClass().getName() + " " + jar);
+    }
+
     @Override
     public CompletionStage<ProcessBuilder> process(Executor executor,
                                                    BuildStepContext context,
@@ -5,10 +5,11 @@ import build.buildbuddy.BuildStepContext;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.SequencedMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
@@ -17,7 +18,7 @@ import java.util.stream.Stream;
 
 public abstract class Java implements ProcessBuildStep {
 
-    private final String java;
+    protected final String java;
     protected boolean modular = true;
 
     protected Java() {
@@ -34,6 +35,14 @@ public abstract class Java implements ProcessBuildStep {
 
     public static Java of(List<String> commands) {
         return new Java() {
+            @Override
+            public Optional<String> configuration() {
+                return Optional.of(getClass().getName()
+                        + " " + java
+                        + (modular ? " modular " : " ")
+                        + String.join(" ", commands));
+            }
+
             @Override
             protected CompletionStage<List<String>> commands(Executor executor,
                                                              BuildStepContext context,
@@ -69,9 +78,8 @@ public abstract class Java implements ProcessBuildStep {
                     }
                 }
             }
-            Path candidate = argument.folder().resolve(ARTIFACTS);
-            if (Files.exists(candidate)) {
-                Files.walkFileTree(candidate, new FileAddingVisitor(modular ? modulePath : classPath));
+            for (Path artifact : argument.inventory().files(ARTIFACTS)) {
+                (modular ? modulePath : classPath).add(argument.folder().resolve(artifact).toString());
             }
         }
         List<String> prefixes = new ArrayList<>();
@@ -98,19 +106,4 @@ public abstract class Java implements ProcessBuildStep {
                 .redirectOutput(context.supplement().resolve("output").toFile())
                 .redirectError(context.supplement().resolve("error").toFile());
     }
-
-    private static class FileAddingVisitor extends SimpleFileVisitor<Path> {
-
-        private final List<String> target;
-
-        private FileAddingVisitor(List<String> target) {
-            this.target = target;
-        }
-
-        @Override
-        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs){
-            target.add(file.toString());
-            return FileVisitResult.CONTINUE;
-        }
-    }
 }
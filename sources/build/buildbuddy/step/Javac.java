@@ -2,16 +2,15 @@ package build.buildbuddy.step;
 
 import build.buildbuddy.BuildStepArgument;
 import build.buildbuddy.BuildStepContext;
+import build.buildbuddy.FileInventory;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.SequencedMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
@@ -31,6 +30,11 @@ public class Javac implements ProcessBuildStep {
         this.javac = javac;
     }
 
+    @Override
+    public Optional<String> configuration() {
+        return Optional.of(getClass().getName() + " " + javac + " --release " + Runtime.version().version().getFirst());
+    }
+
     @Override
     public CompletionStage<ProcessBuilder> process(Executor executor,
                                                    BuildStepContext context,
@@ -40,17 +44,16 @@ public class Javac implements ProcessBuildStep {
                 "--release", Integer.toString(Runtime.version().version().getFirst()),
                 "-d", Files.createDirectory(context.next().resolve(CLASSES)).toString()));
         for (BuildStepArgument argument : arguments.values()) {
-            Path sources = argument.folder().resolve(Bind.SOURCES),
-                    classes = argument.folder().resolve(CLASSES),
-                    artifacts = argument.folder().resolve(ARTIFACTS);
+            FileInventory inventory = argument.inventory();
+            Path classes = argument.folder().resolve(CLASSES);
             if (Files.exists(classes)) {
                 classPath.add(classes.toString());
             }
-            if (Files.exists(artifacts)) {
-                Files.walkFileTree(artifacts, new FileExtensionAddingVisitor(classPath, ".jar"));
+            for (Path artifact : inventory.files(ARTIFACTS, ".jar")) {
+                classPath.add(argument.folder().resolve(artifact).toString());
             }
-            if (Files.exists(sources)) {
-                Files.walkFileTree(sources, new FileExtensionAddingVisitor(files, ".java"));
+            for (Path source : inventory.files(Bind.SOURCES, ".java")) {
+                files.add(argument.folder().resolve(source).toString());
             }
         }
         if (!classPath.isEmpty()) {
@@ -60,23 +63,4 @@ public class Javac implements ProcessBuildStep {
         commands.addAll(files);
         return CompletableFuture.completedStage(new ProcessBuilder(commands));
     }
-
-    private static class FileExtensionAddingVisitor extends SimpleFileVisitor<Path> {
-
-        private final List<String> target;
-        private final String extension;
-
-        private FileExtensionAddingVisitor(List<String> target, String extension) {
-            this.target = target;
-            this.extension = extension;
-        }
-
-        @Override
-        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-            if (file.getFileName().toString().endsWith(extension)) {
-                target.add(file.toString());
-            }
-            return FileVisitResult.CONTINUE;
-        }
-    }
 }
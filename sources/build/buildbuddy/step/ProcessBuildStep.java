@@ -4,10 +4,12 @@ import build.buildbuddy.BuildStep;
 import build.buildbuddy.BuildStepArgument;
 import build.buildbuddy.BuildStepContext;
 import build.buildbuddy.BuildStepResult;
+import build.buildbuddy.BuildTrace;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Map;
 import java.util.SequencedMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
@@ -32,6 +34,11 @@ public interface ProcessBuildStep extends BuildStep {
         }
     }
 
+    @Override
+    default Map<String, Long> resources() {
+        return Map.of(CPU, 1L, MEMORY, 512L, JVM_FORK, 1L);
+    }
+
     CompletionStage<ProcessBuilder> process(Executor executor,
                                             BuildStepContext context,
                                             SequencedMap<String, BuildStepArgument> arguments) throws IOException;
@@ -58,10 +65,13 @@ public interface ProcessBuildStep extends BuildStep {
             CompletableFuture<BuildStepResult> future = new CompletableFuture<>();
             try {
                 ProcessBuilder prepared = prepare(builder, executor, context, arguments);
+                BuildTrace.Span span = context.trace().span("process");
                 Process process = prepared.start();
                 executor.execute(() -> {
                     try {
-                        if (acceptableExitCode(process.waitFor(), executor, context, arguments)) {
+                        int code = process.waitFor();
+                        span.end();
+                        if (acceptableExitCode(code, executor, context, arguments)) {
                             future.complete(new BuildStepResult(true));
                         } else {
                             String output = Files.readString(context.supplement().resolve("output"));
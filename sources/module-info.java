@@ -1,6 +1,8 @@
 module buildbuddy {
     requires jdk.compiler;
     requires java.desktop;
+    requires jdk.httpserver;
+    requires jdk.management;
     exports build.buildbuddy;
     exports build.buildbuddy.maven;
     exports build.buildbuddy.module;
@@ -0,0 +1,69 @@
+package build.buildbuddy.benchmark;
+
+import build.buildbuddy.BuildExecutor;
+import build.buildbuddy.BuildStepResult;
+import build.buildbuddy.HashDigestFunction;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.SequencedSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class BuildExecutorBenchmark {
+
+    private static final int WIDTH = 100, FANIN = 4;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length == 0
+                ? new int[]{1_000, 5_000, 10_000, 25_000, 50_000}
+                : Stream.of(args).mapToInt(Integer::parseInt).toArray();
+        System.out.printf("%10s %12s %12s %14s%n", "steps", "initial ms", "no-op ms", "no-op us/step");
+        for (int size : sizes) {
+            Path root = Files.createTempDirectory("buildbuddy-benchmark");
+            try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+                BuildExecutor buildExecutor = toBuildExecutor(root, size);
+                long initial = measure(buildExecutor, executorService), noop = measure(buildExecutor, executorService);
+                System.out.printf("%10d %12d %12d %14.1f%n",
+                        size,
+                        TimeUnit.NANOSECONDS.toMillis(initial),
+                        TimeUnit.NANOSECONDS.toMillis(noop),
+                        noop / 1_000d / size);
+            } finally {
+                try (Stream<Path> files = Files.walk(root)) {
+                    files.sorted((left, right) -> right.compareTo(left)).forEach(file -> file.toFile().delete());
+                }
+            }
+        }
+    }
+
+    private static BuildExecutor toBuildExecutor(Path root, int size) throws IOException {
+        BuildExecutor buildExecutor = new BuildExecutor(root, new HashDigestFunction("MD5"));
+        for (int index = 0; index < size; index++) {
+            SequencedSet<String> dependencies = new LinkedHashSet<>();
+            int layer = index / WIDTH;
+            if (layer > 0) {
+                for (int offset = 0; offset < FANIN; offset++) {
+                    dependencies.add("step-" + ((layer - 1) * WIDTH + (index + offset * 7) % WIDTH));
+                }
+            }
+            String identity = "step-" + index;
+            buildExecutor.addStep(identity, (_, context, _) -> {
+                Files.writeString(context.next().resolve("result"), identity);
+                return CompletableFuture.completedStage(new BuildStepResult(true));
+            }, dependencies);
+        }
+        return buildExecutor;
+    }
+
+    private static long measure(BuildExecutor buildExecutor, ExecutorService executorService) {
+        long started = System.nanoTime();
+        buildExecutor.execute(executorService).toCompletableFuture().join();
+        return System.nanoTime() - started;
+    }
+}
@@ -0,0 +1,59 @@
+package build.buildbuddy.benchmark;
+
+import build.buildbuddy.ChecksumTable;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+public class ChecksumTableBenchmark {
+
+    private static final int PACKAGES = 50, WIDTH = 16;
+
+    public static void main(String[] args) {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        System.out.printf("%10s %10s %14s %14s%n", "steps", "files", "map B/entry", "table B/entry");
+        long map = measure(steps, files, Function.identity()), table = measure(steps, files, ChecksumTable::of);
+        System.out.printf("%10d %10d %14.1f %14.1f%n",
+                steps,
+                files,
+                (double) map / steps / files,
+                (double) table / steps / files);
+    }
+
+    private static long measure(int steps, int files, Function<Map<Path, byte[]>, Map<Path, byte[]>> compaction) {
+        long baseline = used();
+        List<Map<Path, byte[]>> summaries = new ArrayList<>(steps);
+        for (int step = 0; step < steps; step++) {
+            Map<Path, byte[]> checksums = new LinkedHashMap<>();
+            for (int file = 0; file < files; file++) {
+                byte[] digest = new byte[WIDTH];
+                ThreadLocalRandom.current().nextBytes(digest);
+                checksums.put(Path.of("classes",
+                        "build",
+                        "module" + step,
+                        "package" + file % PACKAGES,
+                        "Sample" + file + ".class"), digest);
+            }
+            summaries.add(compaction.apply(checksums));
+        }
+        long footprint = used() - baseline;
+        if (summaries.size() != steps) {
+            throw new AssertionError();
+        }
+        return footprint;
+    }
+
+    private static long used() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int attempt = 0; attempt < 3; attempt++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
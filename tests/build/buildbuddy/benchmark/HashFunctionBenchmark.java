@@ -0,0 +1,81 @@
+package build.buildbuddy.benchmark;
+
+import build.buildbuddy.HashDigestFunction;
+import build.buildbuddy.HashFunction;
+import build.buildbuddy.Murmur3HashFunction;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+public class HashFunctionBenchmark {
+
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws IOException {
+        Map<String, HashFunction> hashes = new LinkedHashMap<>();
+        hashes.put("murmur3", new Murmur3HashFunction());
+        hashes.put("md5", new HashDigestFunction("MD5"));
+        hashes.put("sha-256", new HashDigestFunction("SHA-256"));
+        Map<String, int[]> distributions = new LinkedHashMap<>();
+        distributions.put("classes", new int[]{5_000, 300, 16 << 10});
+        distributions.put("jars", new int[]{50, 16 << 10, 8 << 20});
+        distributions.put("large", new int[]{1, 256 << 20, 256 << 20});
+        Path root = Files.createTempDirectory("buildbuddy-benchmark");
+        try {
+            System.out.printf("%10s %10s %12s %10s%n", "files", "hash", "ms", "MB/s");
+            for (Map.Entry<String, int[]> distribution : distributions.entrySet()) {
+                List<Path> files = toFiles(Files.createDirectory(root.resolve(distribution.getKey())),
+                        distribution.getValue()[0],
+                        distribution.getValue()[1],
+                        distribution.getValue()[2]);
+                long bytes = 0;
+                for (Path file : files) {
+                    bytes += Files.size(file);
+                }
+                for (Map.Entry<String, HashFunction> hash : hashes.entrySet()) {
+                    measure(hash.getValue(), files);
+                    long best = Long.MAX_VALUE;
+                    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+                        best = Math.min(best, measure(hash.getValue(), files));
+                    }
+                    System.out.printf("%10s %10s %12.1f %10.1f%n",
+                            distribution.getKey(),
+                            hash.getKey(),
+                            best / 1_000_000d,
+                            bytes / (best / 1_000_000_000d) / (1 << 20));
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(root)) {
+                files.sorted((left, right) -> right.compareTo(left)).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    private static List<Path> toFiles(Path folder, int count, int minimum, int maximum) throws IOException {
+        List<Path> files = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            byte[] content = new byte[(int) Math.exp(ThreadLocalRandom.current().nextDouble(
+                    Math.log(minimum),
+                    Math.nextUp(Math.log(maximum))))];
+            ThreadLocalRandom.current().nextBytes(content);
+            files.add(Files.write(folder.resolve("file" + index), content));
+        }
+        return files;
+    }
+
+    private static long measure(HashFunction hash, List<Path> files) throws IOException {
+        long started = System.nanoTime();
+        for (Path file : files) {
+            hash.hash(file);
+        }
+        return System.nanoTime() - started;
+    }
+}
@@ -0,0 +1,132 @@
+package build.buildbuddy.test;
+
+import build.buildbuddy.BuildDaemon;
+import build.buildbuddy.BuildExecutor;
+import build.buildbuddy.BuildStepResult;
+import build.buildbuddy.HashDigestFunction;
+import build.buildbuddy.HashFunction;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BuildDaemonTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path socket, source;
+    private BuildExecutor buildExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        socket = temporaryFolder.getRoot().toPath().resolve("socket");
+        source = temporaryFolder.newFolder("source").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        buildExecutor = new BuildExecutor(temporaryFolder.newFolder("root").toPath(), new HashDigestFunction("MD5"));
+        buildExecutor.addSource("source", source);
+    }
+
+    @Test
+    public void can_build_in_daemon() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        buildExecutor.addStep("step", (_, context, arguments) -> {
+            executions.incrementAndGet();
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "source");
+        try (BuildDaemon _ = BuildDaemon.start(socket, buildExecutor, Runnable::run)) {
+            Map<String, Path> build = BuildDaemon.build(socket, _ -> {
+            });
+            assertThat(build).containsOnlyKeys("source", "step");
+            assertThat(build.get("step").resolve("result")).content().isEqualTo("foo");
+            assertThat(BuildDaemon.build(socket, _ -> {
+            })).containsOnlyKeys("source", "step");
+            assertThat(executions).hasValue(1);
+        }
+        assertThat(socket).doesNotExist();
+    }
+
+    @Test
+    public void can_reuse_state_of_unchanged_steps() throws Exception {
+        HashFunction hash = new HashDigestFunction("MD5");
+        List<String> hashed = new CopyOnWriteArrayList<>();
+        BuildExecutor buildExecutor = new BuildExecutor(temporaryFolder.newFolder("other").toPath(), file -> {
+            hashed.add(file.getFileName().toString());
+            return hash.hash(file);
+        }).fileStates(false);
+        buildExecutor.addSource("source", source);
+        AtomicInteger executions = new AtomicInteger();
+        buildExecutor.addStep("step", (_, context, arguments) -> {
+            executions.incrementAndGet();
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "source");
+        try (BuildDaemon _ = BuildDaemon.start(socket, buildExecutor, Runnable::run)) {
+            assertThat(BuildDaemon.build(socket, _ -> {
+            })).containsOnlyKeys("source", "step");
+            hashed.clear();
+            assertThat(BuildDaemon.build(socket, _ -> {
+            })).containsOnlyKeys("source", "step");
+            assertThat(hashed).containsExactly("sample");
+            Files.writeString(source.resolve("sample"), "bar");
+            Map<String, Path> build = BuildDaemon.build(socket, _ -> {
+            });
+            assertThat(build.get("step").resolve("result")).content().isEqualTo("bar");
+            assertThat(executions).hasValue(2);
+        }
+    }
+
+    @Test
+    public void can_detect_output_removed_outside_daemon() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        buildExecutor.addStep("step", (_, context, arguments) -> {
+            executions.incrementAndGet();
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "source");
+        try (BuildDaemon _ = BuildDaemon.start(socket, buildExecutor, Runnable::run)) {
+            Path result = BuildDaemon.build(socket, _ -> {
+            }).get("step").resolve("result");
+            Files.delete(result);
+            Files.delete(temporaryFolder.getRoot().toPath().resolve("root/step/checksum/checksums"));
+            assertThat(BuildDaemon.build(socket, _ -> {
+            }).get("step").resolve("result")).content().isEqualTo("foo");
+            assertThat(executions).hasValue(2);
+        }
+    }
+
+    @Test
+    public void can_stream_failure_from_daemon() throws Exception {
+        buildExecutor.addStep("step", (_, _, _) -> {
+            throw new RuntimeException("baz");
+        }, "source");
+        List<String> log = new ArrayList<>();
+        try (BuildDaemon _ = BuildDaemon.start(socket, buildExecutor, Runnable::run)) {
+            assertThatThrownBy(() -> BuildDaemon.build(socket, log::add))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("baz");
+        }
+        assertThat(log).anyMatch(line -> line.contains("baz"));
+    }
+
+    @Test
+    public void can_stop_daemon() throws Exception {
+        BuildDaemon daemon = BuildDaemon.start(socket, buildExecutor, Runnable::run);
+        BuildDaemon.stop(socket);
+        daemon.close();
+        assertThat(socket).doesNotExist();
+    }
+}
@@ -9,10 +9,28 @@ import org.junit.rules.TemporaryFolder;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.SequencedMap;
+import java.util.SequencedSet;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -301,4 +319,663 @@ public class BuildExecutorTest {
         assertThat(result2).isRegularFile();
         assertThat(result2).content().isEqualTo("foo");
     }
+
+    @Test
+    public void can_execute_build_with_file_states() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        buildExecutor.addSource("source", source);
+        Map<String, ?> build = buildExecutor.execute(Runnable::run).toCompletableFuture().join();
+        assertThat(build).containsOnlyKeys("source");
+        assertThat(root.resolve(BuildExecutor.FILE_STATES)).isRegularFile();
+    }
+
+    @Test
+    public void can_execute_build_without_file_states() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        buildExecutor.fileStates(false).addSource("source", source);
+        Map<String, ?> build = buildExecutor.execute(Runnable::run).toCompletableFuture().join();
+        assertThat(build).containsOnlyKeys("source");
+        assertThat(root.resolve(BuildExecutor.FILE_STATES)).doesNotExist();
+    }
+
+    @Test
+    public void can_execute_build_with_binary_manifests() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        buildExecutor.binaryManifests(true).addSource("source", source);
+        buildExecutor.addStep("step", (_, context, arguments) -> {
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "source");
+        Map<String, ?> build = buildExecutor.execute(Runnable::run).toCompletableFuture().join();
+        assertThat(build).containsOnlyKeys("source", "step");
+        Path checksum = root.resolve("step").resolve("checksum");
+        assertThat(ChecksumManifest.of(checksum.resolve("checksums"))).isPresent();
+        assertThat(ChecksumManifest.of(checksum.resolve("checksums.source"))).isPresent();
+        buildExecutor.replaceStep("step", (_, _, _) -> {
+            throw new AssertionError("Did not expect that step is executed");
+        });
+        assertThat(buildExecutor.execute(Runnable::run).toCompletableFuture().join()).containsOnlyKeys("source", "step");
+    }
+
+    @Test
+    public void can_pass_binary_manifest_of_unchanged_step() throws IOException {
+        buildExecutor.binaryManifests(true).addStep("step", (_, context, _) -> {
+            Files.writeString(context.next().resolve("result"), "foo");
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        });
+        buildExecutor.addStep("other", (_, context, _) -> {
+            Files.writeString(context.next().resolve("result"), "bar");
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "step");
+        buildExecutor.execute(Runnable::run).toCompletableFuture().join();
+        buildExecutor.replaceStep("other", new BuildStep() {
+            @Override
+            public boolean isAlwaysRun() {
+                return true;
+            }
+
+            @Override
+            public CompletionStage<BuildStepResult> apply(Executor executor,
+                                                          BuildStepContext context,
+                                                          SequencedMap<String, BuildStepArgument> arguments) {
+                assertThat(arguments.get("step").checksums()).isInstanceOf(ChecksumManifest.class);
+                assertThat(arguments.get("step").hasChanged()).isFalse();
+                return CompletableFuture.completedStage(new BuildStepResult(false));
+            }
+        });
+        buildExecutor.execute(Runnable::run).toCompletableFuture().join();
+    }
+
+    @Test
+    public void can_execute_build_with_skipped_step_and_migrated_manifests() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath(),
+                step = Files.createDirectory(root.resolve("step")),
+                checksum = Files.createDirectory(step.resolve("checksum")),
+                output = Files.createDirectory(step.resolve("output"));
+        Files.writeString(source.resolve("sample"), "foo");
+        HashFunction.write(checksum.resolve("checksums.source"), HashFunction.read(source, hash));
+        Files.writeString(output.resolve("result"), "foo");
+        HashFunction.write(checksum.resolve("checksums"), HashFunction.read(output, hash));
+        buildExecutor.binaryManifests(true).addSource("source", source);
+        buildExecutor.addStep("step", (_, _, _) -> {
+            throw new AssertionError("Did not expect that step is executed");
+        }, "source");
+        Map<String, ?> build = buildExecutor.execute(Runnable::run).toCompletableFuture().join();
+        assertThat(build).containsOnlyKeys("source", "step");
+        assertThat(root.resolve("step").resolve("output").resolve("result")).content().isEqualTo("foo");
+    }
+
+    @Test
+    public void can_restore_step_from_cache() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath(), cache = temporaryFolder.newFolder("cache").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        buildExecutor.cache(new LocalBuildCache(cache)).addSource("source", source);
+        buildExecutor.addStep("step", new CacheableBuildStep((_, context, arguments) -> {
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }), "source");
+        assertThat(buildExecutor.execute(Runnable::run).toCompletableFuture().join()).containsOnlyKeys("source", "step");
+        Path other = temporaryFolder.newFolder("other").toPath();
+        BuildExecutor otherExecutor = new BuildExecutor(other, hash).cache(new LocalBuildCache(cache));
+        otherExecutor.addSource("source", source);
+        otherExecutor.addStep("step", new CacheableBuildStep((_, _, _) -> {
+            throw new AssertionError("Did not expect that step is executed");
+        }), "source");
+        assertThat(otherExecutor.execute(Runnable::run).toCompletableFuture().join()).containsOnlyKeys("source", "step");
+        Path result = other.resolve("step").resolve("output").resolve("result");
+        assertThat(result).isRegularFile();
+        assertThat(result).content().isEqualTo("foo");
+    }
+
+    @Test
+    public void can_retain_duration_of_step_restored_from_cache() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath(), cache = temporaryFolder.newFolder("cache").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        buildExecutor.cache(new LocalBuildCache(cache)).addSource("source", source);
+        buildExecutor.addStep("step", new CacheableBuildStep((_, context, arguments) -> {
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }), "source");
+        buildExecutor.execute(Runnable::run).toCompletableFuture().join();
+        Path other = temporaryFolder.newFolder("other").toPath();
+        Files.writeString(other.resolve(BuildExecutor.DURATIONS), "step=123456789\n");
+        BuildExecutor otherExecutor = new BuildExecutor(other, hash).cache(new LocalBuildCache(cache));
+        otherExecutor.addSource("source", source);
+        otherExecutor.addStep("step", new CacheableBuildStep((_, _, _) -> {
+            throw new AssertionError("Did not expect that step is executed");
+        }), "source");
+        otherExecutor.execute(Runnable::run).toCompletableFuture().join();
+        assertThat(other.resolve(BuildExecutor.DURATIONS)).content().contains("step=123456789");
+    }
+
+    @Test
+    public void can_execute_step_on_cache_miss() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath(), cache = temporaryFolder.newFolder("cache").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        buildExecutor.cache(new LocalBuildCache(cache)).addSource("source", source);
+        buildExecutor.addStep("step", new CacheableBuildStep((_, context, arguments) -> {
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }), "source");
+        assertThat(buildExecutor.execute(Runnable::run).toCompletableFuture().join()).containsOnlyKeys("source", "step");
+        Files.writeString(source.resolve("sample"), "bar");
+        Path other = temporaryFolder.newFolder("other").toPath();
+        BuildExecutor otherExecutor = new BuildExecutor(other, hash).cache(new LocalBuildCache(cache));
+        otherExecutor.addSource("source", source);
+        otherExecutor.addStep("step", new CacheableBuildStep((_, context, arguments) -> {
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }), "source");
+        assertThat(otherExecutor.execute(Runnable::run).toCompletableFuture().join()).containsOnlyKeys("source", "step");
+        assertThat(other.resolve("step").resolve("output").resolve("result")).content().isEqualTo("bar");
+    }
+
+    @Test
+    public void can_await_and_report_cache_uploads() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        List<String> stored = new CopyOnWriteArrayList<>();
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        buildExecutor.cache(new BuildCache() {
+            @Override
+            public Optional<Map<Path, byte[]>> restore(String key, Path folder) {
+                return Optional.empty();
+            }
+
+            @Override
+            public void store(String key, Path folder, Map<Path, byte[]> checksums) throws IOException {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                stored.add(Files.readString(folder.resolve("result")));
+                throw new IOException("Upload failed");
+            }
+        }, failures::put).addSource("source", source);
+        buildExecutor.addStep("step", new CacheableBuildStep((_, context, arguments) -> {
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }), "source");
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            assertThat(buildExecutor.execute(executor).toCompletableFuture().join()).containsOnlyKeys("source", "step");
+        }
+        assertThat(stored).containsExactly("foo");
+        assertThat(failures).containsOnlyKeys("step");
+        assertThat(failures.get("step")).isInstanceOf(IOException.class).hasMessage("Upload failed");
+    }
+
+    @Test
+    public void can_prioritize_steps_on_critical_path() throws IOException {
+        Path source1 = temporaryFolder.newFolder("source1").toPath(), source2 = temporaryFolder.newFolder("source2").toPath();
+        Files.writeString(source1.resolve("sample1"), "foo");
+        Files.writeString(source2.resolve("sample2"), "bar");
+        Files.writeString(root.resolve(BuildExecutor.DURATIONS), "step1=1\nstep2=1000\n");
+        List<String> hashed = new ArrayList<>();
+        BuildExecutor buildExecutor = new BuildExecutor(root, file -> {
+            hashed.add(file.getFileName().toString());
+            return hash.hash(file);
+        }).fileStates(false).parallelism(1);
+        buildExecutor.addSource("source1", source1);
+        buildExecutor.addSource("source2", source2);
+        buildExecutor.addStep("step1", (_, _, _) -> CompletableFuture.completedStage(new BuildStepResult(true)), "source1");
+        buildExecutor.addStep("step2", (_, _, _) -> CompletableFuture.completedStage(new BuildStepResult(true)), "source2");
+        assertThat(buildExecutor.execute(Runnable::run).toCompletableFuture().join())
+                .containsOnlyKeys("source1", "source2", "step1", "step2");
+        assertThat(hashed).containsExactly("sample2", "sample1");
+        assertThat(root.resolve(BuildExecutor.DURATIONS)).isRegularFile();
+    }
+
+    @Test
+    public void can_skip_queued_steps_after_failure() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        List<String> started = new ArrayList<>();
+        BuildExecutor buildExecutor = new BuildExecutor(root, hash).parallelism(1);
+        buildExecutor.addSource("source", source);
+        for (String identity : List.of("step1", "step2", "step3")) {
+            buildExecutor.addStep(identity, (_, _, _) -> {
+                started.add(identity);
+                throw new RuntimeException(identity);
+            }, "source");
+        }
+        assertThatThrownBy(() -> buildExecutor.execute(Runnable::run).toCompletableFuture().join())
+                .isInstanceOf(CompletionException.class);
+        assertThat(started).hasSize(1);
+    }
+
+    @Test
+    public void can_limit_steps_by_resources() throws IOException {
+        List<String> started = new ArrayList<>();
+        List<CompletableFuture<BuildStepResult>> pending = new ArrayList<>();
+        buildExecutor.parallelism(2).resource(BuildStep.JVM_FORK, 1);
+        for (String identity : List.of("step1", "step2")) {
+            buildExecutor.addStep(identity, new ResourceBuildStep((_, _, _) -> {
+                CompletableFuture<BuildStepResult> future = new CompletableFuture<>();
+                started.add(identity);
+                pending.add(future);
+                return future;
+            }, Map.of(BuildStep.JVM_FORK, 1L)));
+        }
+        CompletableFuture<Map<String, Path>> build = buildExecutor.execute(Runnable::run).toCompletableFuture();
+        assertThat(started).containsExactly("step1");
+        pending.getFirst().complete(new BuildStepResult(true));
+        assertThat(started).containsExactly("step1", "step2");
+        assertThat(build).isNotDone();
+        pending.getLast().complete(new BuildStepResult(true));
+        assertThat(build.join()).containsOnlyKeys("step1", "step2");
+    }
+
+    @Test
+    public void cannot_register_step_with_negative_resources() {
+        assertThatThrownBy(() -> buildExecutor.addStep("step", new ResourceBuildStep((_, _, _) -> {
+            throw new AssertionError("Did not expect that step is executed");
+        }, Map.of(BuildStep.JVM_FORK, -1L)))).isInstanceOf(IllegalArgumentException.class);
+        assertThat(buildExecutor.execute(Runnable::run).toCompletableFuture().join()).isEmpty();
+    }
+
+    @Test
+    public void can_watch_sources_and_rebuild_downstream_steps() throws Exception {
+        Path source1 = temporaryFolder.newFolder("source1").toPath(), source2 = temporaryFolder.newFolder("source2").toPath();
+        Files.writeString(source1.resolve("sample"), "foo");
+        Files.writeString(source2.resolve("sample"), "bar");
+        buildExecutor.addSource("source1", source1);
+        buildExecutor.addSource("source2", source2);
+        List<String> executed = new CopyOnWriteArrayList<>();
+        for (String identity : List.of("source1", "source2")) {
+            buildExecutor.addStep("step" + identity.charAt(identity.length() - 1), (_, context, arguments) -> {
+                executed.add(identity);
+                Files.copy(arguments.get(identity).folder().resolve("sample"), context.next().resolve("result"));
+                return CompletableFuture.completedStage(new BuildStepResult(true));
+            }, identity);
+        }
+        BlockingQueue<Map<String, Path>> builds = new LinkedBlockingQueue<>();
+        try (BuildWatcher _ = buildExecutor.watch(Runnable::run, (folders, throwable) -> {
+            if (throwable == null) {
+                builds.add(folders);
+            }
+        })) {
+            assertThat(builds.poll(10, TimeUnit.SECONDS)).containsOnlyKeys("source1", "source2", "step1", "step2");
+            assertThat(executed).containsExactlyInAnyOrder("source1", "source2");
+            Files.writeString(source1.resolve("sample"), "qux");
+            Map<String, Path> build = builds.poll(10, TimeUnit.SECONDS);
+            assertThat(build).containsOnlyKeys("source1", "source2", "step1", "step2");
+            assertThat(build.get("step1").resolve("result")).content().isEqualTo("qux");
+            assertThat(executed).containsExactlyInAnyOrder("source1", "source2", "source1");
+        }
+    }
+
+    @Test
+    public void can_watch_sources_and_rerun_always_run_steps() throws Exception {
+        Path source1 = temporaryFolder.newFolder("source1").toPath(), source2 = temporaryFolder.newFolder("source2").toPath();
+        Files.writeString(source1.resolve("sample"), "foo");
+        Files.writeString(source2.resolve("sample"), "bar");
+        buildExecutor.addSource("source1", source1);
+        buildExecutor.addSource("source2", source2);
+        buildExecutor.addStep("step1", (_, context, arguments) -> {
+            Files.copy(arguments.get("source1").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "source1");
+        AtomicInteger executions = new AtomicInteger();
+        buildExecutor.addStep("step2", new BuildStep() {
+            @Override
+            public boolean isAlwaysRun() {
+                return true;
+            }
+
+            @Override
+            public CompletionStage<BuildStepResult> apply(Executor executor,
+                                                          BuildStepContext context,
+                                                          SequencedMap<String, BuildStepArgument> arguments) {
+                executions.incrementAndGet();
+                return CompletableFuture.completedStage(new BuildStepResult(true));
+            }
+        }, "source2");
+        BlockingQueue<Map<String, Path>> builds = new LinkedBlockingQueue<>();
+        try (BuildWatcher _ = buildExecutor.watch(Runnable::run, (folders, throwable) -> {
+            if (throwable == null) {
+                builds.add(folders);
+            }
+        })) {
+            assertThat(builds.poll(10, TimeUnit.SECONDS)).containsOnlyKeys("source1", "source2", "step1", "step2");
+            assertThat(executions).hasValue(1);
+            Files.writeString(source1.resolve("sample"), "qux");
+            assertThat(builds.poll(10, TimeUnit.SECONDS)).containsOnlyKeys("source1", "source2", "step1", "step2");
+            assertThat(executions).hasValue(2);
+        }
+    }
+
+    @Test
+    public void can_execute_build_with_many_steps() throws IOException {
+        List<String> identities = new ArrayList<>();
+        for (int index = 0; index < 500; index++) {
+            String identity = "step" + index;
+            SequencedSet<String> dependencies = new LinkedHashSet<>();
+            if (index > 0) {
+                dependencies.add("step" + (index - 1));
+            }
+            if (index > 10) {
+                dependencies.add("step" + (index - 10));
+            }
+            buildExecutor.addStep(identity, (_, context, arguments) -> {
+                assertThat(arguments.keySet()).containsExactlyElementsOf(dependencies);
+                Files.writeString(context.next().resolve("result"), identity);
+                return CompletableFuture.completedStage(new BuildStepResult(true));
+            }, dependencies);
+            identities.add(identity);
+        }
+        assertThat(buildExecutor.execute(Runnable::run).toCompletableFuture().join().keySet())
+                .containsExactlyElementsOf(identities);
+    }
+
+    @Test
+    public void can_execute_build_for_targets() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        buildExecutor.addSource("source", source);
+        buildExecutor.addStep("step1", (_, context, arguments) -> {
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "source");
+        buildExecutor.addStep("step2", (_, context, arguments) -> {
+            Files.copy(arguments.get("step1").folder().resolve("result"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "step1");
+        buildExecutor.addStep("step3", (_, _, _) -> {
+            throw new AssertionError("Did not expect that step is executed");
+        }, "source");
+        Map<String, Path> build = buildExecutor.execute(Runnable::run, "step2").toCompletableFuture().join();
+        assertThat(build).containsOnlyKeys("source", "step1", "step2");
+        assertThat(build.get("step2").resolve("result")).content().isEqualTo("foo");
+        assertThat(root.resolve("step3")).doesNotExist();
+        assertThatThrownBy(() -> buildExecutor.execute(Runnable::run, "step4"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("step4");
+    }
+
+    @Test
+    public void can_analyze_build_without_executing_steps() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        buildExecutor.addSource("source", source);
+        buildExecutor.addStep("step1", (_, context, arguments) -> {
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "source");
+        buildExecutor.addStep("step2", (_, context, arguments) -> {
+            Files.copy(arguments.get("step1").folder().resolve("result"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "step1");
+        Map<String, BuildStepAnalysis> analysis = buildExecutor.analyze(Runnable::run).toCompletableFuture().join();
+        assertThat(analysis).containsOnlyKeys("step1", "step2");
+        assertThat(analysis.get("step1").reason()).isEqualTo(BuildStepAnalysis.Reason.MISSING);
+        assertThat(root.resolve("step1")).doesNotExist();
+        buildExecutor.execute(Runnable::run).toCompletableFuture().join();
+        assertThat(buildExecutor.analyze(Runnable::run).toCompletableFuture().join().values())
+                .allMatch(BuildStepAnalysis::isUpToDate);
+        Files.writeString(source.resolve("sample"), "bar");
+        buildExecutor.replaceStep("step1", (_, _, _) -> {
+            throw new AssertionError("Did not expect that step is executed");
+        });
+        analysis = buildExecutor.analyze(Runnable::run).toCompletableFuture().join();
+        assertThat(analysis.get("step1").reason()).isEqualTo(BuildStepAnalysis.Reason.CHANGED);
+        assertThat(analysis.get("step1").arguments().get("source").files())
+                .isEqualTo(Map.of(Path.of("sample"), ChecksumStatus.ALTERED));
+        assertThat(analysis.get("step1").invalidations()).isEmpty();
+        assertThat(analysis.get("step2").reason()).isEqualTo(BuildStepAnalysis.Reason.INVALIDATED);
+        assertThat(analysis.get("step2").invalidations()).containsExactly("step1");
+    }
+
+    @Test
+    public void can_analyze_without_changing_root() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        Path leftover = Files.createDirectories(root.resolve(BuildExecutor.STAGING).resolve("leftover"));
+        buildExecutor.addSource("source", source);
+        buildExecutor.addStep("step", (_, _, _) -> {
+            throw new AssertionError("Did not expect that step is executed");
+        }, "source");
+        Map<String, BuildStepAnalysis> analysis = buildExecutor.analyze(Runnable::run).toCompletableFuture().join();
+        assertThat(analysis.get("step").reason()).isEqualTo(BuildStepAnalysis.Reason.MISSING);
+        assertThat(leftover).isDirectory();
+        try (Stream<Path> files = Files.list(root)) {
+            assertThat(files).containsExactly(root.resolve(BuildExecutor.STAGING));
+        }
+    }
+
+    @Test
+    public void can_stage_output_within_root() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        buildExecutor.addSource("source", source);
+        buildExecutor.addStep("step", (_, context, arguments) -> {
+            assertThat(context.next()).startsWith(root.resolve(BuildExecutor.STAGING));
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "source");
+        assertThat(buildExecutor.execute(Runnable::run).toCompletableFuture().join()).containsOnlyKeys("source", "step");
+        assertThat(root.resolve("step").resolve("output").resolve("result")).content().isEqualTo("foo");
+        assertThat(root.resolve(BuildExecutor.STAGING)).isEmptyDirectory();
+    }
+
+    @Test
+    public void can_delete_superseded_output_in_background() throws Exception {
+        Path stale = Files.createDirectories(root.resolve(BuildExecutor.STAGING).resolve("stale"));
+        Files.writeString(stale.resolve("file"), "foo");
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        buildExecutor.addSource("source", source);
+        buildExecutor.addStep("step", (_, context, arguments) -> {
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "source");
+        buildExecutor.execute(Runnable::run).toCompletableFuture().join();
+        assertThat(stale).doesNotExist();
+        Files.writeString(source.resolve("sample"), "bar");
+        buildExecutor.execute(Runnable::run).toCompletableFuture().join();
+        assertThat(root.resolve("step").resolve("output").resolve("result")).content().isEqualTo("bar");
+        Path trash = root.resolve(BuildExecutor.TRASH);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!isEmptyDirectory(trash) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(trash).isEmptyDirectory();
+    }
+
+    @Test
+    public void can_resume_interrupted_commit() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath(),
+                staged = Files.createDirectories(root.resolve(BuildExecutor.STAGING).resolve("step-staged")),
+                checksum = Files.createDirectory(staged.resolve("checksum")),
+                output = Files.createDirectory(staged.resolve("output"));
+        Files.writeString(source.resolve("sample"), "foo");
+        HashFunction.write(checksum.resolve("checksums.source"), HashFunction.read(source, hash));
+        Files.writeString(output.resolve("result"), "foo");
+        HashFunction.write(checksum.resolve("checksums"), HashFunction.read(output, hash));
+        Files.writeString(Files.createDirectory(root.resolve(BuildExecutor.JOURNAL)).resolve("step"),
+                BuildExecutor.STAGING + "/step-staged");
+        buildExecutor.addSource("source", source);
+        buildExecutor.addStep("step", (_, _, _) -> {
+            throw new AssertionError("Did not expect that step is executed");
+        }, "source");
+        assertThat(buildExecutor.execute(Runnable::run).toCompletableFuture().join()).containsOnlyKeys("source", "step");
+        assertThat(root.resolve("step").resolve("output").resolve("result")).content().isEqualTo("foo");
+        assertThat(root.resolve(BuildExecutor.JOURNAL)).isEmptyDirectory();
+        assertThat(staged).doesNotExist();
+    }
+
+    @Test
+    public void can_rerun_step_with_incomplete_commit() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath(),
+                output = Files.createDirectories(root.resolve("step").resolve("output"));
+        Files.writeString(source.resolve("sample"), "foo");
+        Files.writeString(output.resolve("result"), "bar");
+        buildExecutor.addSource("source", source);
+        buildExecutor.addStep("step", (_, context, arguments) -> {
+            assertThat(context.previous()).isNull();
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "source");
+        assertThat(buildExecutor.execute(Runnable::run).toCompletableFuture().join()).containsOnlyKeys("source", "step");
+        assertThat(root.resolve("step").resolve("output").resolve("result")).content().isEqualTo("foo");
+    }
+
+    @Test
+    public void can_share_result_of_concurrent_build() throws Exception {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        CompletableFuture<BuildStepResult> pending = new CompletableFuture<>();
+        buildExecutor.addSource("source", source);
+        buildExecutor.addStep("step", (_, context, arguments) -> {
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return pending;
+        }, "source");
+        BuildExecutor concurrent = new BuildExecutor(root, hash);
+        concurrent.addSource("source", source);
+        concurrent.addStep("step", (_, _, _) -> {
+            throw new AssertionError("Did not expect that step is executed");
+        }, "source");
+        CompletableFuture<Map<String, Path>> first = buildExecutor.execute(Runnable::run).toCompletableFuture();
+        CompletableFuture<Map<String, Path>> second = CompletableFuture.supplyAsync(
+                () -> concurrent.execute(Runnable::run).toCompletableFuture().join());
+        Thread.sleep(100);
+        assertThat(second).isNotDone();
+        pending.complete(new BuildStepResult(true));
+        assertThat(first.join()).containsOnlyKeys("source", "step");
+        assertThat(second.get(10, TimeUnit.SECONDS)).containsOnlyKeys("source", "step");
+        assertThat(root.resolve("step").resolve("output").resolve("result")).content().isEqualTo("foo");
+    }
+
+    @Test
+    public void can_await_step_lock_without_blocking_executor() throws Exception {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        CompletableFuture<BuildStepResult> pending = new CompletableFuture<>();
+        buildExecutor.addSource("source", source);
+        buildExecutor.addStep("step", (_, context, arguments) -> {
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return pending;
+        }, "source");
+        BuildExecutor concurrent = new BuildExecutor(root, hash);
+        concurrent.addSource("source", source);
+        concurrent.addStep("step", (_, _, _) -> {
+            throw new AssertionError("Did not expect that step is executed");
+        }, "source");
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            CompletableFuture<Map<String, Path>> first = buildExecutor.execute(executor).toCompletableFuture();
+            Thread.sleep(100);
+            CompletableFuture<Map<String, Path>> second = concurrent.execute(executor).toCompletableFuture();
+            Thread.sleep(100);
+            assertThat(second).isNotDone();
+            pending.complete(new BuildStepResult(true));
+            assertThat(first.get(10, TimeUnit.SECONDS)).containsOnlyKeys("source", "step");
+            assertThat(second.get(10, TimeUnit.SECONDS)).containsOnlyKeys("source", "step");
+        }
+    }
+
+    @Test
+    public void can_verify_outputs_before_dependencies_complete() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        List<Path> hashed = new CopyOnWriteArrayList<>();
+        BuildExecutor buildExecutor = new BuildExecutor(root, file -> {
+            hashed.add(file);
+            return hash.hash(file);
+        }).fileStates(false);
+        buildExecutor.addSource("source", source);
+        buildExecutor.addStep("step1", (_, context, arguments) -> {
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "source");
+        buildExecutor.addStep("step2", (_, context, arguments) -> {
+            Files.copy(arguments.get("step1").folder().resolve("result"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "step1");
+        buildExecutor.execute(Runnable::run).toCompletableFuture().join();
+        CompletableFuture<BuildStepResult> pending = new CompletableFuture<>();
+        buildExecutor.replaceStep("step1", (_, context, arguments) -> {
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return pending;
+        });
+        Files.writeString(source.resolve("sample"), "bar");
+        hashed.clear();
+        CompletableFuture<Map<String, Path>> build = buildExecutor.execute(Runnable::run).toCompletableFuture();
+        assertThat(hashed).contains(root.resolve("step2").resolve("output").resolve("result"));
+        pending.complete(new BuildStepResult(true));
+        assertThat(build.join()).containsOnlyKeys("source", "step1", "step2");
+        assertThat(root.resolve("step2").resolve("output").resolve("result")).content().isEqualTo("bar");
+    }
+
+    @Test
+    public void can_use_checksums_reported_by_step() throws IOException {
+        byte[] reported = new byte[16];
+        buildExecutor.addStep("step", (_, context, _) -> {
+            Files.writeString(context.next().resolve("reported"), "foo");
+            Files.writeString(context.next().resolve("hashed"), "bar");
+            context.checksums().put(Path.of("reported"), reported);
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        });
+        buildExecutor.addStep("other", (_, context, arguments) -> {
+            assertThat(arguments.get("step").checksums().get(Path.of("reported"))).isEqualTo(reported);
+            assertThat(arguments.get("step").checksums().get(Path.of("hashed"))).isEqualTo(
+                    hash.hash(arguments.get("step").folder().resolve("hashed")));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "step");
+        buildExecutor.execute(Runnable::run).toCompletableFuture().join();
+        assertThat(new String(Files.readAllBytes(root.resolve(BuildExecutor.FILE_STATES)), StandardCharsets.UTF_8))
+                .contains("hashed")
+                .doesNotContain("reported");
+    }
+
+    @Test
+    public void can_execute_build_with_trace() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath(), trace = temporaryFolder.newFile("trace").toPath();
+        Files.writeString(source.resolve("sample"), "foo");
+        buildExecutor.trace(trace).addSource("source", source);
+        buildExecutor.addStep("step", (_, context, arguments) -> {
+            context.trace().span("custom").end();
+            Files.copy(arguments.get("source").folder().resolve("sample"), context.next().resolve("result"));
+            return CompletableFuture.completedStage(new BuildStepResult(true));
+        }, "source");
+        assertThat(buildExecutor.execute(Runnable::run).toCompletableFuture().join()).containsOnlyKeys("source", "step");
+        assertThat(Files.readString(trace))
+                .startsWith("{\"traceEvents\":[")
+                .contains("\"step apply\"", "\"step custom\"", "\"step commit\"", "\"step hash\"", "\"source hash\"");
+    }
+
+    private static boolean isEmptyDirectory(Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.findAny().isEmpty();
+        }
+    }
+
+    private record CacheableBuildStep(BuildStep delegate) implements BuildStep {
+
+        @Override
+        public Optional<String> configuration() {
+            return Optional.of("sample");
+        }
+
+        @Override
+        public CompletionStage<BuildStepResult> apply(Executor executor,
+                                                      BuildStepContext context,
+                                                      SequencedMap<String, BuildStepArgument> arguments)
+                throws IOException {
+            return delegate.apply(executor, context, arguments);
+        }
+    }
+
+    private record ResourceBuildStep(BuildStep delegate, Map<String, Long> resources) implements BuildStep {
+
+        @Override
+        public CompletionStage<BuildStepResult> apply(Executor executor,
+                                                      BuildStepContext context,
+                                                      SequencedMap<String, BuildStepArgument> arguments)
+                throws IOException {
+            return delegate.apply(executor, context, arguments);
+        }
+    }
 }
@@ -0,0 +1,29 @@
+package build.buildbuddy.test;
+
+import build.buildbuddy.BuildStepArgument;
+import build.buildbuddy.ChecksumStatus;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BuildStepArgumentTest {
+
+    @Test
+    public void can_compare_arguments_by_checksum_content() {
+        BuildStepArgument argument = new BuildStepArgument(Path.of("folder"), Map.of(
+                Path.of("foo"), ChecksumStatus.ADDED), Map.of(
+                Path.of("foo"), new byte[]{1, 2, 3}));
+        assertThat(argument).isEqualTo(new BuildStepArgument(Path.of("folder"), Map.of(
+                Path.of("foo"), ChecksumStatus.ADDED), Map.of(
+                Path.of("foo"), new byte[]{1, 2, 3})));
+        assertThat(argument).hasSameHashCodeAs(new BuildStepArgument(Path.of("folder"), Map.of(
+                Path.of("foo"), ChecksumStatus.ADDED), Map.of(
+                Path.of("foo"), new byte[]{1, 2, 3})));
+        assertThat(argument).isNotEqualTo(new BuildStepArgument(Path.of("folder"), Map.of(
+                Path.of("foo"), ChecksumStatus.ADDED), Map.of(
+                Path.of("foo"), new byte[]{4, 5, 6})));
+    }
+}
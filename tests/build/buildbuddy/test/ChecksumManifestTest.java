@@ -0,0 +1,115 @@
+package build.buildbuddy.test;
+
+import build.buildbuddy.ChecksumManifest;
+import build.buildbuddy.ChecksumStatus;
+import build.buildbuddy.ChecksumTable;
+import build.buildbuddy.HashFunction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ChecksumManifestTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void can_write_and_read_manifest() throws IOException {
+        Path file = temporaryFolder.newFile("file").toPath();
+        Map<Path, byte[]> checksums = new LinkedHashMap<>();
+        checksums.put(Path.of("foo/qux"), new byte[]{1, 2, 3});
+        checksums.put(Path.of("bar"), new byte[]{4, 5, 6});
+        checksums.put(Path.of("foo"), new byte[]{7, 8, 9});
+        ChecksumManifest.write(file, checksums);
+        ChecksumManifest manifest = ChecksumManifest.of(file).orElseThrow();
+        assertThat(manifest).hasSize(3);
+        assertThat(new ArrayList<>(manifest.keySet())).containsExactly(Path.of("bar"), Path.of("foo"), Path.of("foo/qux"));
+        assertThat(manifest.get(Path.of("foo/qux"))).isEqualTo(new byte[]{1, 2, 3});
+        assertThat(manifest.get(Path.of("bar"))).isEqualTo(new byte[]{4, 5, 6});
+        assertThat(manifest.get(Path.of("foo"))).isEqualTo(new byte[]{7, 8, 9});
+        assertThat(manifest.get(Path.of("baz"))).isNull();
+        assertThat(manifest.containsKey(Path.of("foo"))).isTrue();
+        assertThat(manifest.containsKey(Path.of("qux"))).isFalse();
+    }
+
+    @Test
+    public void can_write_and_read_empty_manifest() throws IOException {
+        Path file = temporaryFolder.newFile("file").toPath();
+        ChecksumManifest.write(file, Map.of());
+        ChecksumManifest manifest = ChecksumManifest.of(file).orElseThrow();
+        assertThat(manifest).isEmpty();
+        assertThat(manifest.get(Path.of("foo"))).isNull();
+    }
+
+    @Test
+    public void can_read_manifest_and_text_file_transparently() throws IOException {
+        Path text = temporaryFolder.newFile("text").toPath(), binary = temporaryFolder.newFile("binary").toPath();
+        HashFunction.write(text, Map.of(Path.of("foo"), new byte[]{1, 2, 3}));
+        ChecksumManifest.write(binary, Map.of(Path.of("foo"), new byte[]{1, 2, 3}));
+        assertThat(ChecksumManifest.of(text)).isEmpty();
+        for (Path file : List.of(text, binary)) {
+            Map<Path, byte[]> checksums = HashFunction.read(file);
+            assertThat(checksums).containsOnlyKeys(Path.of("foo"));
+            assertThat(checksums.get(Path.of("foo"))).isEqualTo(new byte[]{1, 2, 3});
+        }
+        assertThat(HashFunction.read(binary)).isInstanceOf(ChecksumManifest.class);
+    }
+
+    @Test
+    public void can_persist_folder_digests() throws IOException {
+        Path file = temporaryFolder.newFile("file").toPath();
+        Map<Path, byte[]> checksums = new LinkedHashMap<>();
+        checksums.put(Path.of("foo/bar/baz"), new byte[]{1, 2, 3});
+        checksums.put(Path.of("foo/qux"), new byte[]{4, 5, 6});
+        checksums.put(Path.of("bar"), new byte[]{7, 8, 9});
+        ChecksumManifest.write(file, checksums);
+        ChecksumManifest manifest = ChecksumManifest.of(file).orElseThrow();
+        ChecksumTable table = ChecksumTable.of(checksums);
+        for (Path folder : List.of(Path.of(""), Path.of("foo"), Path.of("foo/bar"))) {
+            assertThat(manifest.digest(folder)).isEqualTo(table.digest(folder));
+        }
+        assertThat(manifest.digest(Path.of("bar"))).isNull();
+        assertThat(manifest.get(Path.of("foo/qux"))).isEqualTo(new byte[]{4, 5, 6});
+    }
+
+    @Test
+    public void can_diff_manifest_against_table() throws IOException {
+        Path file = temporaryFolder.newFile("file").toPath();
+        Map<Path, byte[]> checksums = new LinkedHashMap<>();
+        for (int index = 0; index < 10; index++) {
+            checksums.put(Path.of("foo/file" + index), new byte[]{(byte) index});
+            checksums.put(Path.of("bar/baz/file" + index), new byte[]{(byte) index});
+        }
+        ChecksumManifest.write(file, checksums);
+        ChecksumManifest manifest = ChecksumManifest.of(file).orElseThrow();
+        assertThat(ChecksumStatus.diff(manifest, ChecksumTable.of(checksums)).hasChanged()).isFalse();
+        checksums.put(Path.of("bar/baz/file1"), new byte[]{-1});
+        checksums.put(Path.of("bar/added"), new byte[]{1});
+        checksums.remove(Path.of("foo/file2"));
+        assertThat(ChecksumStatus.diff(manifest, ChecksumTable.of(checksums)).changes()).containsOnly(
+                Map.entry(Path.of("bar/baz/file1"), ChecksumStatus.ALTERED),
+                Map.entry(Path.of("bar/added"), ChecksumStatus.ADDED),
+                Map.entry(Path.of("foo/file2"), ChecksumStatus.REMOVED));
+    }
+
+    @Test
+    public void rejects_checksums_of_different_length() throws IOException {
+        Path file = temporaryFolder.newFile("file").toPath();
+        Map<Path, byte[]> checksums = new LinkedHashMap<>();
+        checksums.put(Path.of("foo"), new byte[]{1, 2, 3});
+        checksums.put(Path.of("bar"), new byte[]{4, 5});
+        assertThatThrownBy(() -> ChecksumManifest.write(file, checksums))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("bar");
+    }
+}
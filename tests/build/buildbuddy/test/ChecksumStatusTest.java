@@ -1,10 +1,14 @@
 package build.buildbuddy.test;
 
+import build.buildbuddy.ChecksumDiff;
 import build.buildbuddy.ChecksumStatus;
+import build.buildbuddy.ChecksumTable;
 import org.junit.Test;
 
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -41,4 +45,60 @@ public class ChecksumStatusTest {
                 Map.of(Path.of("foo"), new byte[]{4, 5, 6}));
         assertThat(status).containsOnly(Map.entry(Path.of("foo"), ChecksumStatus.ALTERED));
     }
+
+    @Test
+    public void can_track_changes_sparsely() {
+        Map<Path, byte[]> expected = new LinkedHashMap<>(), actual = new LinkedHashMap<>();
+        for (int index = 0; index < 100; index++) {
+            expected.put(Path.of("file" + index), new byte[]{(byte) index});
+            actual.put(Path.of("file" + index), new byte[]{(byte) index});
+        }
+        assertThat(ChecksumStatus.diff(expected, actual).hasChanged()).isFalse();
+        assertThat(ChecksumStatus.diff(expected, actual).changes()).isEmpty();
+        actual.put(Path.of("file1"), new byte[]{-1});
+        actual.put(Path.of("added"), new byte[]{1});
+        actual.remove(Path.of("file2"));
+        ChecksumDiff diff = ChecksumStatus.diff(expected, actual);
+        assertThat(diff.hasChanged()).isTrue();
+        assertThat(diff.changes()).containsOnly(
+                Map.entry(Path.of("file1"), ChecksumStatus.ALTERED),
+                Map.entry(Path.of("added"), ChecksumStatus.ADDED),
+                Map.entry(Path.of("file2"), ChecksumStatus.REMOVED));
+        assertThat(diff).hasSize(101);
+        assertThat(diff.get(Path.of("file3"))).isEqualTo(ChecksumStatus.RETAINED);
+        assertThat(diff.get(Path.of("file2"))).isEqualTo(ChecksumStatus.REMOVED);
+        assertThat(diff.get(Path.of("unknown"))).isNull();
+        assertThat(diff.keySet()).containsAll(expected.keySet()).contains(Path.of("added"));
+    }
+
+    @Test
+    public void can_diff_changed_subtrees() {
+        Map<Path, byte[]> expected = new LinkedHashMap<>();
+        for (int index = 0; index < 10; index++) {
+            expected.put(Path.of("foo/file" + index), new byte[]{(byte) index});
+            expected.put(Path.of("bar/baz/file" + index), new byte[]{(byte) index});
+        }
+        Map<Path, byte[]> actual = new LinkedHashMap<>(expected);
+        assertThat(ChecksumStatus.diff(ChecksumTable.of(expected), ChecksumTable.of(actual)).hasChanged()).isFalse();
+        actual.put(Path.of("bar/baz/file1"), new byte[]{-1});
+        actual.put(Path.of("bar/added"), new byte[]{1});
+        actual.remove(Path.of("foo/file2"));
+        ChecksumDiff diff = ChecksumStatus.diff(ChecksumTable.of(expected), ChecksumTable.of(actual));
+        assertThat(diff.changes()).containsOnly(
+                Map.entry(Path.of("bar/baz/file1"), ChecksumStatus.ALTERED),
+                Map.entry(Path.of("bar/added"), ChecksumStatus.ADDED),
+                Map.entry(Path.of("foo/file2"), ChecksumStatus.REMOVED));
+        assertThat(diff).hasSize(21);
+        assertThat(diff.get(Path.of("foo/file3"))).isEqualTo(ChecksumStatus.RETAINED);
+    }
+
+    @Test
+    public void can_enumerate_added() {
+        ChecksumDiff diff = ChecksumStatus.added(Set.of(Path.of("foo"), Path.of("bar")));
+        assertThat(diff.hasChanged()).isTrue();
+        assertThat(diff).containsOnly(
+                Map.entry(Path.of("foo"), ChecksumStatus.ADDED),
+                Map.entry(Path.of("bar"), ChecksumStatus.ADDED));
+        assertThat(ChecksumStatus.added(Set.of()).hasChanged()).isFalse();
+    }
 }
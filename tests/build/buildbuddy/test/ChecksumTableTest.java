@@ -0,0 +1,82 @@
+package build.buildbuddy.test;
+
+import build.buildbuddy.ChecksumTable;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ChecksumTableTest {
+
+    @Test
+    public void can_create_table() {
+        Map<Path, byte[]> checksums = new LinkedHashMap<>();
+        checksums.put(Path.of("foo/qux"), new byte[]{1, 2, 3});
+        checksums.put(Path.of("bar"), new byte[]{4, 5, 6});
+        checksums.put(Path.of("foo/baz"), new byte[]{7, 8, 9});
+        checksums.put(Path.of("foo"), new byte[]{10, 11, 12});
+        ChecksumTable table = ChecksumTable.of(checksums);
+        assertThat(table).hasSize(4);
+        assertThat(new ArrayList<>(table.keySet())).containsExactly(
+                Path.of("bar"),
+                Path.of("foo"),
+                Path.of("foo/baz"),
+                Path.of("foo/qux"));
+        assertThat(table.get(Path.of("foo/qux"))).isEqualTo(new byte[]{1, 2, 3});
+        assertThat(table.get(Path.of("bar"))).isEqualTo(new byte[]{4, 5, 6});
+        assertThat(table.get(Path.of("foo/baz"))).isEqualTo(new byte[]{7, 8, 9});
+        assertThat(table.get(Path.of("foo"))).isEqualTo(new byte[]{10, 11, 12});
+        assertThat(table.get(Path.of("foo/bar"))).isNull();
+        assertThat(table.get(Path.of("qux/foo"))).isNull();
+        for (int index = 0; index < table.size(); index++) {
+            assertThat(table.indexOf(table.path(index))).isEqualTo(index);
+        }
+    }
+
+    @Test
+    public void can_create_empty_table() {
+        ChecksumTable table = ChecksumTable.of(Map.of());
+        assertThat(table).isEmpty();
+        assertThat(table.get(Path.of("foo"))).isNull();
+    }
+
+    @Test
+    public void can_reuse_table() {
+        ChecksumTable table = ChecksumTable.of(Map.of(Path.of("foo"), new byte[]{1}));
+        assertThat(ChecksumTable.of(table)).isSameAs(table);
+    }
+
+    @Test
+    public void can_compute_folder_digests() {
+        Map<Path, byte[]> checksums = new LinkedHashMap<>();
+        checksums.put(Path.of("foo/bar/baz"), new byte[]{1, 2, 3});
+        checksums.put(Path.of("foo/qux"), new byte[]{4, 5, 6});
+        checksums.put(Path.of("bar"), new byte[]{7, 8, 9});
+        ChecksumTable table = ChecksumTable.of(checksums);
+        assertThat(table.digest(Path.of(""))).isNotNull();
+        assertThat(table.digest(Path.of("foo"))).isNotNull();
+        assertThat(table.digest(Path.of("foo/bar"))).isNotNull();
+        assertThat(table.digest(Path.of("bar"))).isNull();
+        checksums.put(Path.of("bar"), new byte[]{10, 11, 12});
+        ChecksumTable other = ChecksumTable.of(checksums);
+        assertThat(other.digest(Path.of(""))).isNotEqualTo(table.digest(Path.of("")));
+        assertThat(other.digest(Path.of("foo"))).isEqualTo(table.digest(Path.of("foo")));
+        checksums.put(Path.of("foo/bar/baz"), new byte[]{13, 14, 15});
+        ChecksumTable altered = ChecksumTable.of(checksums);
+        assertThat(altered.digest(Path.of("foo"))).isNotEqualTo(table.digest(Path.of("foo")));
+        assertThat(altered.digest(Path.of("foo/bar"))).isNotEqualTo(table.digest(Path.of("foo/bar")));
+    }
+
+    @Test
+    public void cannot_create_table_of_different_length() {
+        Map<Path, byte[]> checksums = new LinkedHashMap<>();
+        checksums.put(Path.of("foo"), new byte[]{1, 2, 3});
+        checksums.put(Path.of("bar"), new byte[]{4, 5});
+        assertThatThrownBy(() -> ChecksumTable.of(checksums)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,50 @@
+package build.buildbuddy.test;
+
+import build.buildbuddy.BuildStepArgument;
+import build.buildbuddy.ChecksumStatus;
+import build.buildbuddy.FileInventory;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileInventoryTest {
+
+    @Test
+    public void can_find_files_by_prefix_and_extension() {
+        FileInventory inventory = FileInventory.of(List.of(
+                Path.of("sources/foo/Bar.java"),
+                Path.of("sources/foo/bar.txt"),
+                Path.of("sources-other/Baz.java"),
+                Path.of("classes/foo/Bar.class"),
+                Path.of("sources/Qux.java")));
+        assertThat(inventory.size()).isEqualTo(5);
+        assertThat(inventory.files("sources/", ".java")).containsExactly(
+                Path.of("sources/Qux.java"),
+                Path.of("sources/foo/Bar.java"));
+        assertThat(inventory.files("sources/")).containsExactly(
+                Path.of("sources/Qux.java"),
+                Path.of("sources/foo/Bar.java"),
+                Path.of("sources/foo/bar.txt"));
+        assertThat(inventory.files("classes/", ".class")).containsExactly(Path.of("classes/foo/Bar.class"));
+        assertThat(inventory.files("artifacts/")).isEmpty();
+        assertThat(inventory.contains(Path.of("sources/foo/bar.txt"))).isTrue();
+        assertThat(inventory.contains(Path.of("sources/foo"))).isFalse();
+    }
+
+    @Test
+    public void can_derive_inventory_from_argument() {
+        BuildStepArgument argument = new BuildStepArgument(Path.of("folder"), Map.of(
+                Path.of("sources/Foo.java"), ChecksumStatus.ADDED,
+                Path.of("sources/Bar.java"), ChecksumStatus.REMOVED));
+        assertThat(argument.inventory().files("sources/", ".java")).containsExactly(Path.of("sources/Foo.java"));
+        BuildStepArgument checksummed = new BuildStepArgument(Path.of("folder"), Map.of(
+                Path.of("sources/Bar.java"), ChecksumStatus.REMOVED), Map.of(
+                Path.of("sources/Foo.java"), new byte[]{1, 2, 3}));
+        assertThat(checksummed.inventory().files("sources/")).containsExactly(Path.of("sources/Foo.java"));
+        assertThat(checksummed.inventory()).isSameAs(checksummed.inventory());
+    }
+}
@@ -0,0 +1,96 @@
+package build.buildbuddy.test;
+
+import build.buildbuddy.FileStateCache;
+import build.buildbuddy.HashDigestFunction;
+import build.buildbuddy.HashFunction;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileStateCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path states, file;
+    private AtomicInteger count;
+    private HashFunction hash;
+
+    @Before
+    public void setUp() throws Exception {
+        states = temporaryFolder.newFolder("root").toPath().resolve("states");
+        file = Files.writeString(temporaryFolder.newFile("file").toPath(), "foo");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+        count = new AtomicInteger();
+        hash = _ -> new byte[]{(byte) count.incrementAndGet()};
+    }
+
+    @Test
+    public void can_reuse_hash_of_unchanged_file() throws IOException {
+        FileStateCache cache = new FileStateCache(states, hash);
+        assertThat(cache.hash(file)).isEqualTo(new byte[]{1});
+        assertThat(cache.hash(file)).isEqualTo(new byte[]{1});
+        assertThat(count).hasValue(1);
+    }
+
+    @Test
+    public void can_rehash_changed_file() throws IOException {
+        FileStateCache cache = new FileStateCache(states, hash);
+        assertThat(cache.hash(file)).isEqualTo(new byte[]{1});
+        Files.writeString(file, "bar");
+        assertThat(cache.hash(file)).isEqualTo(new byte[]{2});
+        assertThat(count).hasValue(2);
+    }
+
+    @Test
+    public void can_rehash_recently_modified_file() throws IOException {
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        FileStateCache cache = new FileStateCache(states, hash);
+        assertThat(cache.hash(file)).isEqualTo(new byte[]{1});
+        assertThat(cache.hash(file)).isEqualTo(new byte[]{2});
+    }
+
+    @Test
+    public void can_persist_and_reload_states() throws IOException {
+        FileStateCache cache = new FileStateCache(states, hash);
+        assertThat(cache.hash(file)).isEqualTo(new byte[]{1});
+        cache.persist();
+        assertThat(states).isRegularFile();
+        assertThat(new FileStateCache(states, hash).hash(file)).isEqualTo(new byte[]{1});
+        assertThat(count).hasValue(1);
+    }
+
+    @Test
+    public void can_discard_states_of_other_hash_function() throws IOException, NoSuchAlgorithmException {
+        FileStateCache cache = new FileStateCache(states, new HashDigestFunction("SHA-256"));
+        assertThat(cache.hash(file)).hasSize(32);
+        cache.persist();
+        assertThat(new FileStateCache(states, new HashDigestFunction("MD5")).hash(file))
+                .isEqualTo(MessageDigest.getInstance("MD5").digest("foo".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void can_discard_states_of_deleted_files() throws IOException {
+        FileStateCache cache = new FileStateCache(states, hash);
+        assertThat(cache.hash(file)).isEqualTo(new byte[]{1});
+        Files.delete(file);
+        cache.persist();
+        Files.writeString(file, "foo");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+        assertThat(new FileStateCache(states, hash).hash(file)).isEqualTo(new byte[]{2});
+    }
+}
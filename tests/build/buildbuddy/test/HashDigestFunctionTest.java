@@ -25,4 +25,35 @@ public class HashDigestFunctionTest {
         byte[] hash = new HashDigestFunction("MD5").hash(file);
         assertThat(hash).isEqualTo(MessageDigest.getInstance("MD5").digest("bar".getBytes(StandardCharsets.UTF_8)));
     }
+
+    @Test
+    public void can_compute_hash_of_large_file() throws IOException, NoSuchAlgorithmException {
+        byte[] content = new byte[(1 << 18) + 3];
+        for (int index = 0; index < content.length; index++) {
+            content[index] = (byte) index;
+        }
+        Path file = Files.write(temporaryFolder.newFile("file").toPath(), content);
+        HashDigestFunction hash = new HashDigestFunction("SHA-256");
+        assertThat(hash.hash(file)).isEqualTo(MessageDigest.getInstance("SHA-256").digest(content));
+        assertThat(hash.hash(file)).isEqualTo(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    @Test
+    public void can_compute_hash_of_file_spanning_several_windows() throws IOException, NoSuchAlgorithmException {
+        byte[] content = new byte[(1 << 26) + (1 << 16) + 3];
+        for (int index = 0; index < content.length; index++) {
+            content[index] = (byte) (index * 31);
+        }
+        Path file = Files.write(temporaryFolder.newFile("file").toPath(), content);
+        assertThat(new HashDigestFunction("MD5").hash(file)).isEqualTo(MessageDigest.getInstance("MD5").digest(content));
+    }
+
+    @Test
+    public void can_reuse_digest_for_different_files() throws IOException, NoSuchAlgorithmException {
+        Path first = Files.writeString(temporaryFolder.newFile("first").toPath(), "foo");
+        Path second = Files.writeString(temporaryFolder.newFile("second").toPath(), "bar");
+        HashDigestFunction hash = new HashDigestFunction("MD5");
+        assertThat(hash.hash(first)).isEqualTo(MessageDigest.getInstance("MD5").digest("foo".getBytes(StandardCharsets.UTF_8)));
+        assertThat(hash.hash(second)).isEqualTo(MessageDigest.getInstance("MD5").digest("bar".getBytes(StandardCharsets.UTF_8)));
+    }
 }
@@ -8,7 +8,11 @@ import org.junit.rules.TemporaryFolder;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -52,4 +56,55 @@ public class HashFunctionTest {
         });
         assertThat(checksums).isEmpty();
     }
+
+    @Test
+    public void can_extract_folder_in_parallel_in_stable_order() throws IOException {
+        Path folder = temporaryFolder.newFolder("folder").toPath();
+        for (int index = 0; index < 10; index++) {
+            Path nested = Files.createDirectories(folder.resolve("bar" + index).resolve("qux"));
+            Files.writeString(nested.resolve("foo"), "bar");
+            Files.writeString(folder.resolve("bar" + index).resolve("baz"), "qux");
+            Files.writeString(folder.resolve("foo" + index), "bar");
+        }
+        Map<Path, byte[]> checksums;
+        try (ExecutorService executorService = Executors.newFixedThreadPool(4)) {
+            checksums = HashFunction.read(folder, file -> new byte[]{(byte) file.toString().length()}, executorService)
+                    .toCompletableFuture()
+                    .join();
+        }
+        Map<Path, byte[]> expected = HashFunction.read(folder, file -> new byte[]{(byte) file.toString().length()});
+        assertThat(new ArrayList<>(checksums.keySet())).isEqualTo(new ArrayList<>(expected.keySet()));
+        assertThat(checksums).hasSize(30);
+        expected.forEach((path, checksum) -> assertThat(checksums.get(path)).isEqualTo(checksum));
+    }
+
+    @Test
+    public void can_extract_empty_folder_in_parallel() {
+        Path folder = temporaryFolder.getRoot().toPath();
+        Map<Path, byte[]> checksums = HashFunction.read(folder, _ -> {
+            throw new UnsupportedOperationException();
+        }, Runnable::run).toCompletableFuture().join();
+        assertThat(checksums).isEmpty();
+    }
+
+    @Test
+    public void can_validate_consistency_in_parallel() throws IOException {
+        Path folder = temporaryFolder.newFolder("folder").toPath();
+        Files.writeString(Files.createDirectory(folder.resolve("bar")).resolve("foo"), "bar");
+        List<Path> hashed = new ArrayList<>();
+        HashFunction hash = file -> {
+            hashed.add(file);
+            return new byte[]{1, 2, 3};
+        };
+        assertThat(HashFunction.areConsistent(folder, Map.of(Path.of("bar/foo"), new byte[]{1, 2, 3}), hash, Runnable::run)
+                .toCompletableFuture()
+                .join()).isTrue();
+        assertThat(HashFunction.areConsistent(folder, Map.of(Path.of("bar/foo"), new byte[]{4, 5, 6}), hash, Runnable::run)
+                .toCompletableFuture()
+                .join()).isFalse();
+        assertThat(HashFunction.areConsistent(folder, Map.of(), hash, Runnable::run)
+                .toCompletableFuture()
+                .join()).isFalse();
+        assertThat(hashed).hasSize(2);
+    }
 }
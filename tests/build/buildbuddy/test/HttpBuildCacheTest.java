@@ -0,0 +1,77 @@
+package build.buildbuddy.test;
+
+import build.buildbuddy.HttpBuildCache;
+import build.buildbuddy.HttpBuildCacheServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HttpBuildCacheTest {
+
+    private static final String KEY = "0123456789abcdef";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path output, restored;
+    private HttpBuildCacheServer server;
+    private HttpBuildCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        output = temporaryFolder.newFolder("output").toPath();
+        restored = temporaryFolder.newFolder("restored").toPath();
+        server = new HttpBuildCacheServer(temporaryFolder.newFolder("cache").toPath(), 0);
+        cache = new HttpBuildCache(URI.create("http://localhost:" + server.port()));
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void can_store_and_restore() throws IOException {
+        Files.writeString(output.resolve("foo"), "bar");
+        Files.writeString(Files.createDirectory(output.resolve("qux")).resolve("baz"), "qux");
+        cache.store(KEY, output, Map.of(Path.of("foo"), new byte[]{1, 2, 3}, Path.of("qux/baz"), new byte[]{4, 5, 6}));
+        Optional<Map<Path, byte[]>> checksums = cache.restore(KEY, restored);
+        assertThat(checksums).isPresent();
+        assertThat(checksums.get()).containsOnlyKeys(Path.of("foo"), Path.of("qux/baz"));
+        assertThat(checksums.get().get(Path.of("foo"))).isEqualTo(new byte[]{1, 2, 3});
+        assertThat(restored.resolve("foo")).content().isEqualTo("bar");
+        assertThat(restored.resolve("qux/baz")).content().isEqualTo("qux");
+    }
+
+    @Test
+    public void can_miss() throws IOException {
+        assertThat(cache.restore(KEY, restored)).isEmpty();
+        assertThat(restored).isEmptyDirectory();
+    }
+
+    @Test
+    public void can_time_out() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            HttpBuildCache cache = new HttpBuildCache(
+                    URI.create("http://localhost:" + socket.getLocalPort()),
+                    Duration.ofMillis(100));
+            assertThatThrownBy(() -> cache.restore(KEY, restored)).isInstanceOf(SocketTimeoutException.class);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package build.buildbuddy.test;
+
+import build.buildbuddy.HashFunction;
+import build.buildbuddy.LocalBuildCache;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalBuildCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path cache, output, restored;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = temporaryFolder.newFolder("cache").toPath();
+        output = temporaryFolder.newFolder("output").toPath();
+        restored = temporaryFolder.newFolder("restored").toPath();
+    }
+
+    @Test
+    public void can_store_and_restore() throws IOException {
+        Files.writeString(output.resolve("foo"), "bar");
+        Files.writeString(Files.createDirectory(output.resolve("qux")).resolve("baz"), "qux");
+        LocalBuildCache buildCache = new LocalBuildCache(cache);
+        buildCache.store("key", output, Map.of(Path.of("foo"), new byte[]{1, 2, 3}));
+        Optional<Map<Path, byte[]>> checksums = buildCache.restore("key", restored);
+        assertThat(checksums).isPresent();
+        assertThat(checksums.get()).containsOnlyKeys(Path.of("foo"));
+        assertThat(restored.resolve("foo")).content().isEqualTo("bar");
+        assertThat(restored.resolve("qux/baz")).content().isEqualTo("qux");
+    }
+
+    @Test
+    public void can_miss() throws IOException {
+        assertThat(new LocalBuildCache(cache).restore("key", restored)).isEmpty();
+        assertThat(restored).isEmptyDirectory();
+    }
+
+    @Test
+    public void can_retain_existing_entry() throws IOException {
+        Files.writeString(output.resolve("foo"), "bar");
+        LocalBuildCache buildCache = new LocalBuildCache(cache);
+        buildCache.store("key", output, Map.of(Path.of("foo"), new byte[]{1, 2, 3}));
+        buildCache.store("key", output, Map.of(Path.of("foo"), new byte[]{4, 5, 6}));
+        assertThat(HashFunction.read(cache.resolve("key").resolve("checksums")).get(Path.of("foo")))
+                .isEqualTo(new byte[]{1, 2, 3});
+        assertThat(cache).isDirectoryNotContaining(path -> path.getFileName().toString().startsWith("."));
+    }
+
+    @Test
+    public void can_copy_shared_files() throws IOException {
+        Path source = Files.writeString(temporaryFolder.newFile("source").toPath(), "bar");
+        Files.createLink(output.resolve("foo"), source);
+        new LocalBuildCache(cache).store("key", output, Map.of(Path.of("foo"), new byte[]{1, 2, 3}));
+        Files.writeString(source, "qux");
+        assertThat(cache.resolve("key").resolve("output").resolve("foo")).content().isEqualTo("bar");
+    }
+}
@@ -0,0 +1,46 @@
+package build.buildbuddy.test;
+
+import build.buildbuddy.Murmur3HashFunction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class Murmur3HashFunctionTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void can_compute_hash() throws IOException {
+        Path file = Files.writeString(temporaryFolder.newFile("file").toPath(),
+                "The quick brown fox jumps over the lazy dog");
+        assertThat(HexFormat.of().formatHex(new Murmur3HashFunction().hash(file)))
+                .isEqualTo("6c1b07bc7bbc4be347939ac4a93c437a");
+    }
+
+    @Test
+    public void can_compute_hash_of_empty_file() throws IOException {
+        Path file = temporaryFolder.newFile("file").toPath();
+        assertThat(new Murmur3HashFunction().hash(file)).isEqualTo(new byte[16]);
+    }
+
+    @Test
+    public void can_compute_hash_across_chunks() throws IOException {
+        byte[] content = new byte[(1 << 17) + 7];
+        for (int index = 0; index < content.length; index++) {
+            content[index] = (byte) index;
+        }
+        Path file = Files.write(temporaryFolder.newFile("file").toPath(), content);
+        byte[] hash = new Murmur3HashFunction().hash(file);
+        content[content.length - 1]++;
+        Path other = Files.write(temporaryFolder.newFile("other").toPath(), content);
+        assertThat(hash).hasSize(16).isNotEqualTo(new Murmur3HashFunction().hash(other));
+    }
+}
@@ -16,6 +16,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.HexFormat;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -66,6 +67,9 @@ public class MavenRepositoryTest {
         }
         assertThat(dependency).content().isEqualTo("foo");
         assertThat(local.resolve("group/artifact/1/artifact-1.jar")).content().isEqualTo("foo");
+        try (Stream<Path> files = Files.list(local.resolve("group/artifact/1"))) {
+            assertThat(files).containsExactly(local.resolve("group/artifact/1/artifact-1.jar"));
+        }
     }
 
     @Test
@@ -52,4 +52,24 @@ public class BindTest {
         assertThat(next.resolve("other/copied")).content().isEqualTo("foo");
         assertThat(next.resolve("other/sub/file")).content().isEqualTo("bar");
     }
+
+    @Test
+    public void can_report_checksums_of_linked_files() throws IOException {
+        Files.writeString(Files.createDirectories(original.resolve("folder/sub")).resolve("file"), "foo");
+        Files.writeString(original.resolve("other"), "bar");
+        BuildStepContext context = new BuildStepContext(previous, next, supplement);
+        BuildStepResult result = new Bind(Map.of(Path.of("folder"), Path.of("target"))).apply(
+                Runnable::run,
+                context,
+                new LinkedHashMap<>(Map.of("original", new BuildStepArgument(
+                        original,
+                        Map.of(Path.of("folder/sub/file"), ChecksumStatus.ADDED,
+                                Path.of("other"), ChecksumStatus.ADDED),
+                        Map.of(Path.of("folder/sub/file"), new byte[]{1, 2, 3},
+                                Path.of("other"), new byte[]{4, 5, 6}))))).toCompletableFuture().join();
+        assertThat(result.next()).isTrue();
+        assertThat(next.resolve("target/sub/file")).content().isEqualTo("foo");
+        assertThat(context.checksums()).containsOnlyKeys(Path.of("target/sub/file"));
+        assertThat(context.checksums().get(Path.of("target/sub/file"))).isEqualTo(new byte[]{1, 2, 3});
+    }
 }
\ No newline at end of file
@@ -53,4 +53,11 @@ public class JavacTest {
         assertThat(result.next()).isTrue();
         assertThat(next.resolve(Javac.CLASSES + "sample/Sample.class")).isNotEmptyFile();
     }
+
+    @Test
+    public void can_distinguish_configuration_of_subclass() {
+        assertThat(new Javac("javac").configuration()).isNotEqualTo(new Javac("other").configuration());
+        assertThat(new Javac("javac").configuration()).isNotEqualTo(new Javac("javac") {
+        }.configuration());
+    }
 }